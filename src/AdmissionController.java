@@ -0,0 +1,422 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The Class AdmissionController bounds how many searches run at once so that
+ * traffic spikes queue briefly or are turned away instead of slowing every
+ * search down.
+ *
+ * The number of searches allowed to run adapts to their latency (additive
+ * increase, multiplicative decrease): while searches of every lane finish
+ * within a tolerance of the fastest latency seen for their lane, the limit
+ * grows by about one per limit's worth of searches, and when one finishes
+ * slower, the limit shrinks by a fixed factor, at most once for the searches
+ * started before the previous decrease.
+ *
+ * Searches beyond the limit wait in a bounded queue per lane. Exact searches
+ * are cheap and are always admitted first, while partial searches may only
+ * take a share of the limit that leaves at least one slot to exact searches
+ * whenever the limit is above one, so a burst of expensive partial searches
+ * cannot starve exact ones. A search is rejected at once when its lane's queue is
+ * full, and after waiting too long otherwise.
+ *
+ * Waiting uses a {@link ReentrantLock} rather than monitors so that waiting
+ * virtual threads do not pin their carrier threads.
+ */
+public class AdmissionController {
+
+	/**
+	 * The lanes searches wait in, by priority.
+	 */
+	public enum Lane {
+
+		/** Exact searches, admitted first. */
+		EXACT,
+
+		/** Partial searches, limited to a share of the limit. */
+		PARTIAL
+	}
+
+	/** The factor latency may grow by over the fastest one before backing off. */
+	public static final double TOLERANCE = 2.0;
+
+	/** The factor the limit shrinks by when searches slow down. */
+	public static final double BACKOFF = 0.9;
+
+	/** The weight of a new latency in the recent latency. */
+	private static final double SMOOTHING = 0.1;
+
+	/** The weight of the recent latency when the baseline drifts upward. */
+	private static final double DRIFT = 0.001;
+
+	/** The smallest limit. */
+	private final int minLimit;
+
+	/** The largest limit. */
+	private final int maxLimit;
+
+	/** The number of searches that may wait in each lane. */
+	private final int queueSize;
+
+	/** The longest time a search waits, in nanoseconds. */
+	private final long maxWait;
+
+	/** The share of the limit partial searches may take. */
+	private final double partialShare;
+
+	/** The lock guarding the state below. */
+	private final ReentrantLock lock;
+
+	/** The number of searches allowed to run at once. */
+	private double limit;
+
+	/** The number of searches running. */
+	private int running;
+
+	/** The number of searches running in each lane. */
+	private final int[] laneRunning;
+
+	/** The searches waiting in each lane, oldest first. */
+	private final ArrayDeque<Waiter>[] queues;
+
+	/** The average recent latency of each lane, in nanoseconds. */
+	private final double[] recent;
+
+	/** The lowest recent latency of each lane, in nanoseconds. */
+	private final double[] baseline;
+
+	/** Whether the last search of each lane was slower than tolerated. */
+	private final boolean[] congested;
+
+	/** When the limit last shrank. */
+	private long lastDecrease;
+
+	/** The number of searches admitted. */
+	private long admitted;
+
+	/** The number of searches rejected. */
+	private long rejected;
+
+	/**
+	 * A search waiting to be admitted.
+	 */
+	private static class Waiter {
+
+		/** The condition signaled when the search is admitted. */
+		private final Condition condition;
+
+		/** Whether the search was admitted. */
+		private boolean admitted;
+
+		/**
+		 * Instantiates a new waiter.
+		 *
+		 * @param condition the condition
+		 */
+		private Waiter(Condition condition) {
+			this.condition = condition;
+			this.admitted = false;
+		}
+	}
+
+	/**
+	 * The permission to run one search, released by closing it once the search
+	 * finished.
+	 */
+	public class Permit implements AutoCloseable {
+
+		/** The lane. */
+		private final Lane lane;
+
+		/** When the search started running. */
+		private final long start;
+
+		/** Whether the permit was released. */
+		private boolean released;
+
+		/**
+		 * Instantiates a new permit.
+		 *
+		 * @param lane the lane
+		 */
+		private Permit(Lane lane) {
+			this.lane = lane;
+			this.start = System.nanoTime();
+			this.released = false;
+		}
+
+		@Override
+		public void close() {
+			if (!released) {
+				released = true;
+				release(lane, start, System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * Instantiates a new admission controller starting at a limit of searches,
+	 * growing up to four times as many, with a queue of twice the limit per lane,
+	 * at most a second of waiting, and three quarters of the limit for partial
+	 * searches.
+	 *
+	 * @param limit the initial number of searches allowed to run at once
+	 */
+	public AdmissionController(int limit) {
+		this(limit, 1, 4 * Math.max(1, limit), 2 * Math.max(1, limit), 1000, 0.75);
+	}
+
+	/**
+	 * Instantiates a new admission controller.
+	 *
+	 * @param limit        the initial number of searches allowed to run at once
+	 * @param minLimit     the smallest limit
+	 * @param maxLimit     the largest limit
+	 * @param queueSize    the number of searches that may wait in each lane, or 0
+	 *                     to reject searches beyond the limit at once
+	 * @param maxWait      the longest time a search waits in milliseconds
+	 * @param partialShare the share of the limit partial searches may take
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public AdmissionController(int limit, int minLimit, int maxLimit, int queueSize, long maxWait,
+			double partialShare) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.queueSize = Math.max(0, queueSize);
+		this.maxWait = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWait));
+		this.partialShare = Math.min(1, Math.max(0, partialShare));
+		this.lock = new ReentrantLock();
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, limit));
+		this.laneRunning = new int[Lane.values().length];
+		this.queues = new ArrayDeque[Lane.values().length];
+		for (int i = 0; i < queues.length; i++) {
+			queues[i] = new ArrayDeque<>();
+		}
+		this.recent = new double[Lane.values().length];
+		this.baseline = new double[Lane.values().length];
+		this.congested = new boolean[Lane.values().length];
+		this.lastDecrease = System.nanoTime();
+	}
+
+	/**
+	 * Admits a search, waiting for a running search to finish if the limit is
+	 * reached.
+	 *
+	 * @param lane the lane of the search
+	 * @return the permit to run the search, to close once it finished, or null if
+	 *         the search is rejected
+	 * @throws InterruptedException if interrupted while waiting, before being
+	 *                              admitted
+	 */
+	public Permit admit(Lane lane) throws InterruptedException {
+		lock.lock();
+		try {
+			ArrayDeque<Waiter> queue = queues[lane.ordinal()];
+			if (queue.isEmpty() && canRun(lane)) {
+				start(lane);
+				return new Permit(lane);
+			}
+			if (queue.size() >= queueSize) {
+				rejected++;
+				return null;
+			}
+			Waiter waiter = new Waiter(lock.newCondition());
+			queue.add(waiter);
+			long remaining = maxWait;
+			try {
+				while (!waiter.admitted && remaining > 0) {
+					remaining = waiter.condition.awaitNanos(remaining);
+				}
+			} catch (InterruptedException e) {
+				if (!waiter.admitted) {
+					queue.remove(waiter);
+					throw e;
+				}
+				// admitted while interrupted, keep the permit and the interrupt
+				Thread.currentThread().interrupt();
+			}
+			if (!waiter.admitted) {
+				queue.remove(waiter);
+				rejected++;
+				return null;
+			}
+			return new Permit(lane);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks whether a search of a lane may start now. Partial searches never
+	 * take the last slot of a limit above one, so an exact search can always
+	 * start without waiting for a partial one to finish.
+	 *
+	 * @param lane the lane
+	 * @return true if the search may start
+	 */
+	private boolean canRun(Lane lane) {
+		int allowed = (int) limit;
+		if (running >= allowed) {
+			return false;
+		}
+		if (lane != Lane.PARTIAL) {
+			return true;
+		}
+		int share = allowed > 1 ? Math.min(allowed - 1, Math.max(1, (int) (allowed * partialShare))) : 1;
+		return laneRunning[lane.ordinal()] < share;
+	}
+
+	/**
+	 * Counts a search of a lane as running.
+	 *
+	 * @param lane the lane
+	 */
+	private void start(Lane lane) {
+		running++;
+		laneRunning[lane.ordinal()]++;
+		admitted++;
+	}
+
+	/**
+	 * Releases the permit of a finished search, adapts the limit to its latency
+	 * and admits the waiting searches that may now run.
+	 *
+	 * @param lane    the lane
+	 * @param start   when the search started running
+	 * @param latency how long the search ran in nanoseconds
+	 */
+	private void release(Lane lane, long start, long latency) {
+		lock.lock();
+		try {
+			running--;
+			laneRunning[lane.ordinal()]--;
+			adapt(lane, start, latency);
+			for (Lane next : Lane.values()) {
+				ArrayDeque<Waiter> queue = queues[next.ordinal()];
+				while (!queue.isEmpty() && canRun(next)) {
+					Waiter waiter = queue.poll();
+					waiter.admitted = true;
+					start(next);
+					waiter.condition.signal();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adapts the limit to the latency of a finished search.
+	 *
+	 * @param lane    the lane
+	 * @param start   when the search started running
+	 * @param latency how long the search ran in nanoseconds
+	 */
+	private void adapt(Lane lane, long start, long latency) {
+		int i = lane.ordinal();
+		recent[i] = recent[i] == 0 ? Math.max(1, latency) : recent[i] + (latency - recent[i]) * SMOOTHING;
+		if (baseline[i] == 0 || recent[i] < baseline[i]) {
+			baseline[i] = recent[i];
+		}
+		congested[i] = recent[i] > baseline[i] * TOLERANCE;
+		if (!congested[i] || limit <= minLimit) {
+			// follow a lasting slowdown, such as a larger index, unless shedding load
+			baseline[i] += (recent[i] - baseline[i]) * DRIFT;
+		}
+		if (congested[i]) {
+			if (start - lastDecrease > 0) {
+				limit = Math.max(minLimit, limit * BACKOFF);
+				lastDecrease = System.nanoTime();
+			}
+		} else if (running + 1 >= limit / 2 && !isCongested()) {
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+	}
+
+	/**
+	 * Checks whether the last search of any lane was slower than tolerated, so
+	 * that many fast searches of one lane do not grow the limit while another
+	 * lane is slowing down.
+	 *
+	 * @return true if a lane is congested
+	 */
+	private boolean isCongested() {
+		for (boolean lane : congested) {
+			if (lane) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the number of searches currently allowed to run at once.
+	 *
+	 * @return the limit
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of searches running.
+	 *
+	 * @return the number of searches running
+	 */
+	public int getRunning() {
+		lock.lock();
+		try {
+			return running;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of searches waiting in a lane.
+	 *
+	 * @param lane the lane
+	 * @return the number of searches waiting
+	 */
+	public int getWaiting(Lane lane) {
+		lock.lock();
+		try {
+			return queues[lane.ordinal()].size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of searches rejected so far.
+	 *
+	 * @return the number of searches rejected
+	 */
+	public long getRejected() {
+		lock.lock();
+		try {
+			return rejected;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			return String.format("limit %d, running %d, waiting %d exact and %d partial, admitted %d, rejected %d",
+					(int) limit, running, queues[Lane.EXACT.ordinal()].size(), queues[Lane.PARTIAL.ordinal()].size(),
+					admitted, rejected);
+		} finally {
+			lock.unlock();
+		}
+	}
+}
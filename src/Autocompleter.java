@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Class Autocompleter suggests the most frequent words of a snapshot
+ * starting with a typed prefix. Every node of the term trie spanning more than
+ * {@link #DEFAULT} words stores its best {@link #DEFAULT} words by collection
+ * frequency, merged bottom up from its children, so a keystroke is answered by
+ * walking the prefix and copying the stored list. Smaller nodes are ranked on
+ * demand since they hold few words.
+ */
+public class Autocompleter {
+
+	/** The number of completions stored per trie node. */
+	public static final int DEFAULT = 10;
+
+	/** The index snapshot. */
+	private final IndexSnapshot snapshot;
+
+	/** The dictionary of words. */
+	private final TermDictionary dictionary;
+
+	/** The offset of the stored completions of each trie node, or -1. */
+	private final int[] offsets;
+
+	/** The number of stored completions of each trie node. */
+	private final byte[] sizes;
+
+	/** The stored completions of every trie node, best first. */
+	private final int[] completions;
+
+	/**
+	 * Precomputes the best completions of every large trie node.
+	 *
+	 * @param snapshot the index snapshot
+	 */
+	Autocompleter(IndexSnapshot snapshot) {
+		this.snapshot = snapshot;
+		this.dictionary = snapshot.getDictionary();
+
+		int nodes = dictionary.nodes();
+		offsets = new int[nodes];
+		sizes = new byte[nodes];
+		int stored = 0;
+		for (int node = 0; node < nodes; node++) {
+			if (dictionary.high(node) - dictionary.low(node) > DEFAULT) {
+				offsets[node] = stored;
+				stored += DEFAULT;
+			} else {
+				offsets[node] = -1;
+			}
+		}
+		completions = new int[stored];
+
+		// children always follow their parent, so walking backwards visits children first
+		int[] merged = new int[DEFAULT];
+		for (int node = nodes - 1; node >= 0; node--) {
+			if (offsets[node] < 0) {
+				continue;
+			}
+			int size = 0;
+			if (dictionary.isTerminal(node)) {
+				merged[size++] = dictionary.low(node);
+			}
+			int first = dictionary.firstChild(node);
+			for (int child = first; child < first + dictionary.degree(node); child++) {
+				if (offsets[child] >= 0) {
+					for (int i = 0; i < sizes[child]; i++) {
+						size = insert(merged, size, completions[offsets[child] + i]);
+					}
+				} else {
+					for (int term = dictionary.low(child); term < dictionary.high(child); term++) {
+						size = insert(merged, size, term);
+					}
+				}
+			}
+			System.arraycopy(merged, 0, completions, offsets[node], size);
+			sizes[node] = (byte) size;
+		}
+	}
+
+	/**
+	 * Inserts a word into a list sorted best first, keeping at most
+	 * {@link #DEFAULT} words.
+	 *
+	 * @param sorted the words, best first
+	 * @param size   the number of words in the list
+	 * @param term   the word to insert
+	 * @return the new number of words
+	 */
+	private int insert(int[] sorted, int size, int term) {
+		int i = Math.min(size, DEFAULT - 1);
+		if (size == DEFAULT && !better(term, sorted[i])) {
+			return size;
+		}
+		while (i > 0 && better(term, sorted[i - 1])) {
+			sorted[i] = sorted[i - 1];
+			i--;
+		}
+		sorted[i] = term;
+		return Math.min(size + 1, DEFAULT);
+	}
+
+	/**
+	 * Tests whether a word ranks before another, by collection frequency and then
+	 * alphabetically.
+	 *
+	 * @param term  the word
+	 * @param other the other word
+	 * @return true if the word ranks first
+	 */
+	private boolean better(int term, int other) {
+		long difference = snapshot.collectionFrequency(term) - snapshot.collectionFrequency(other);
+		return difference > 0 || difference == 0 && term < other;
+	}
+
+	/**
+	 * Returns the best words below a trie node, from the stored list if there is
+	 * one or by ranking the few words below it otherwise.
+	 *
+	 * @param node the trie node
+	 * @param n    the number of words
+	 * @return the word ids, best first
+	 */
+	private int[] best(int node, int n) {
+		if (offsets[node] >= 0 && n <= DEFAULT) {
+			return Arrays.copyOfRange(completions, offsets[node], offsets[node] + Math.min(n, sizes[node]));
+		}
+
+		int low = dictionary.low(node);
+		int high = dictionary.high(node);
+		Integer[] terms = new Integer[high - low];
+		for (int term = low; term < high; term++) {
+			terms[term - low] = term;
+		}
+		Arrays.sort(terms, (a, b) -> better(a, b) ? -1 : better(b, a) ? 1 : 0);
+		int[] best = new int[Math.min(n, terms.length)];
+		for (int i = 0; i < best.length; i++) {
+			best[i] = terms[i];
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the most frequent words starting with the prefix.
+	 *
+	 * @param prefix the cleaned prefix
+	 * @param n      the number of completions
+	 * @return the completions, most frequent first
+	 */
+	public List<String> complete(String prefix, int n) {
+		List<String> words = new ArrayList<>();
+		int node = dictionary.find(prefix);
+		if (node < 0 || n <= 0) {
+			return words;
+		}
+		for (int term : best(node, n)) {
+			words.add(dictionary.term(term));
+		}
+		return words;
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * The Class BM25Model scores locations with Okapi BM25, which saturates the
+ * contribution of repeated words and normalizes by location length.
+ */
+public class BM25Model implements ScoringModel {
+
+	/** The default term frequency saturation. */
+	public static final double K1 = 1.2;
+
+	/** The default length normalization. */
+	public static final double B = 0.75;
+
+	/** The term frequency saturation. */
+	private final double k1;
+
+	/** The length normalization. */
+	private final double b;
+
+	/**
+	 * Instantiates a new BM25 model with the default parameters.
+	 */
+	public BM25Model() {
+		this(K1, B);
+	}
+
+	/**
+	 * Instantiates a new BM25 model.
+	 *
+	 * @param k1 the term frequency saturation
+	 * @param b  the length normalization, between 0 and 1
+	 */
+	public BM25Model(double k1, double b) {
+		this.k1 = k1;
+		this.b = b;
+	}
+
+	@Override
+	public double weight(IndexSnapshot snapshot, int term) {
+		double documents = snapshot.documents();
+		double frequency = snapshot.documentFrequency(term);
+		return Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+	}
+
+	@Override
+	public double score(IndexSnapshot snapshot, double weight, int frequency, int document) {
+		double norm = k1 * (1 - b + b * snapshot.length(document) / snapshot.getAverageLength());
+		return weight * frequency * (k1 + 1) / (frequency + norm);
+	}
+
+	@Override
+	public String toString() {
+		return k1 == K1 && b == B ? "bm25" : "bm25(" + k1 + ", " + b + ")";
+	}
+}
@@ -0,0 +1,344 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * The Class BooleanQuery matches locations by required, optional and excluded
+ * words. A word written <code>+word</code> or joined to a neighbour by
+ * <code>AND</code> is required, a word written <code>-word</code> or following
+ * <code>NOT</code> is excluded, and any other word (including those joined by
+ * <code>OR</code>) is optional. When there are required words every match must
+ * contain all of them, otherwise a match must contain any optional word, and no
+ * match may contain an excluded word. A query of only excluded words thus
+ * matches nothing.
+ *
+ * Queries are evaluated one location at a time over the sorted postings of
+ * each word. Required words are intersected by leapfrogging their cursors with
+ * skip pointers, so only a small fraction of the postings of common words are
+ * visited, and optional and excluded words are only probed at the candidate
+ * locations.
+ */
+public class BooleanQuery implements Query {
+
+	/** The operator joining two required words. */
+	public static final String AND = "AND";
+
+	/** The operator joining two optional words. */
+	public static final String OR = "OR";
+
+	/** The operator excluding the next word. */
+	public static final String NOT = "NOT";
+
+	/** The required stemmed words. */
+	private final TreeSet<String> required;
+
+	/** The optional stemmed words. */
+	private final TreeSet<String> optional;
+
+	/** The excluded stemmed words. */
+	private final TreeSet<String> excluded;
+
+	/**
+	 * Instantiates a new boolean query.
+	 *
+	 * @param required the required stemmed words
+	 * @param optional the optional stemmed words
+	 * @param excluded the excluded stemmed words
+	 */
+	public BooleanQuery(TreeSet<String> required, TreeSet<String> optional, TreeSet<String> excluded) {
+		this.required = required;
+		this.optional = optional;
+		this.excluded = excluded;
+		this.optional.removeAll(required);
+	}
+
+	/**
+	 * Parses a query line as a boolean query if it uses any operator.
+	 *
+	 * @param line    the query line
+	 * @param stemmer the stemmer to use
+	 * @return the boolean query, or null if the line has no operators or no words
+	 */
+	public static BooleanQuery parse(String line, Stemmer stemmer) {
+		String[] tokens = TextParser.split(line);
+		boolean operators = false;
+		for (String token : tokens) {
+			if (token.equals(AND) || token.equals(OR) || token.equals(NOT)
+					|| token.length() > 1 && (token.startsWith("+") || token.startsWith("-"))) {
+				operators = true;
+				break;
+			}
+		}
+		if (!operators) {
+			return null;
+		}
+
+		TreeSet<String> required = new TreeSet<>();
+		TreeSet<String> optional = new TreeSet<>();
+		TreeSet<String> excluded = new TreeSet<>();
+
+		String previous = null;
+		boolean and = false;
+		boolean not = false;
+		for (String token : tokens) {
+			if (token.equals(AND)) {
+				and = previous != null;
+				if (and) {
+					optional.remove(previous);
+					required.add(previous);
+				}
+				continue;
+			} else if (token.equals(NOT)) {
+				not = true;
+				continue;
+			} else if (token.equals(OR)) {
+				and = false;
+				continue;
+			}
+
+			TreeSet<String> clause = optional;
+			if (not || token.startsWith("-")) {
+				clause = excluded;
+			} else if (and || token.startsWith("+")) {
+				clause = required;
+			}
+
+			previous = null;
+			for (String word : TextFileStemmer.stemLine(token, stemmer)) {
+				clause.add(word);
+				previous = clause == excluded ? null : word;
+			}
+			and = false;
+			not = false;
+		}
+
+		if (required.isEmpty() && optional.isEmpty() && excluded.isEmpty()) {
+			return null;
+		}
+		// a query of only excluded words matches nothing
+		return new BooleanQuery(required, optional, excluded);
+	}
+
+	/**
+	 * Creates a cursor over the locations of a stemmed word, or over the union of
+	 * the locations of every word starting with it.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param word     the stemmed word
+	 * @param exact    whether to match the whole word instead of a prefix
+	 * @param model    the scoring model, or null
+	 * @return the cursor, or null if no word matches
+	 */
+	static PostingIterator cursor(IndexSnapshot snapshot, String word, boolean exact, ScoringModel model) {
+		if (exact) {
+			int term = snapshot.termId(word);
+			return term < 0 ? null : new PostingCursor(snapshot, term, model);
+		}
+		int[] range = snapshot.prefixRange(word);
+		if (range[0] == range[1]) {
+			return null;
+		} else if (range[1] - range[0] == 1) {
+			return new PostingCursor(snapshot, range[0], model);
+		}
+		List<PostingCursor> cursors = new ArrayList<>();
+		for (int term = range[0]; term < range[1]; term++) {
+			cursors.add(new PostingCursor(snapshot, term, model));
+		}
+		return new UnionCursor(cursors);
+	}
+
+	/**
+	 * Creates the cursors for a set of words, skipping words that match nothing.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param words    the stemmed words
+	 * @param exact    whether to match whole words instead of prefixes
+	 * @param model    the scoring model, or null
+	 * @return the cursors
+	 */
+	private static List<PostingIterator> cursors(IndexSnapshot snapshot, TreeSet<String> words, boolean exact,
+			ScoringModel model) {
+		List<PostingIterator> cursors = new ArrayList<>();
+		for (String word : words) {
+			PostingIterator cursor = cursor(snapshot, word, exact, model);
+			if (cursor != null) {
+				cursors.add(cursor);
+			}
+		}
+		return cursors;
+	}
+
+	@Override
+	public TopResults search(IndexSnapshot snapshot, boolean exact, ScoringModel model, int k, SearchBudget budget) {
+		TopKCollector collector = new TopKCollector(k);
+
+		List<PostingIterator> must = cursors(snapshot, required, exact, model);
+		List<PostingIterator> should = cursors(snapshot, optional, exact, model);
+		List<PostingIterator> mustNot = cursors(snapshot, excluded, exact, model);
+
+		PostingIterator lead;
+		if (!required.isEmpty()) {
+			if (must.size() < required.size()) {
+				// a required word matches nothing
+				return collector.toTopResults();
+			}
+			lead = new ConjunctionCursor(must);
+		} else if (!should.isEmpty()) {
+			lead = new UnionCursor(should);
+			should = new ArrayList<>();
+		} else {
+			return collector.toTopResults();
+		}
+
+		boolean partial = false;
+		int visited = 0;
+		for (int doc = lead.doc(); doc != PostingIterator.NO_MORE; doc = lead.next()) {
+			if (budget != null && ++visited == IndexSnapshot.BUDGET_INTERVAL) {
+				budget.charge(visited);
+				visited = 0;
+				if (budget.isExceeded()) {
+					partial = true;
+					break;
+				}
+			}
+			boolean rejected = false;
+			for (PostingIterator cursor : mustNot) {
+				if (cursor.advance(doc) == doc) {
+					rejected = true;
+					break;
+				}
+			}
+			if (rejected) {
+				continue;
+			}
+
+			int count = lead.frequency();
+			double score = model == null ? 0 : lead.score(model);
+			for (PostingIterator cursor : should) {
+				if (cursor.advance(doc) == doc) {
+					count += cursor.frequency();
+					if (model != null) {
+						score += cursor.score(model);
+					}
+				}
+			}
+
+			String location = snapshot.location(doc);
+			int total = snapshot.length(doc);
+			collector.offer(model == null ? new SearchResult(location, count, total)
+					: new SearchResult(location, count, total, score));
+		}
+		return new TopResults(collector.getResults(), collector.getTotalHits(), partial);
+	}
+
+	@Override
+	public String toString() {
+		List<String> words = new ArrayList<>();
+		for (String word : required) {
+			words.add("+" + word);
+		}
+		words.addAll(optional);
+		for (String word : excluded) {
+			words.add("-" + word);
+		}
+		return String.join(" ", words);
+	}
+
+	/**
+	 * The Class ConjunctionCursor iterates over the locations containing every one
+	 * of several words by leapfrogging their cursors to the largest current
+	 * location until they all agree.
+	 */
+	private static class ConjunctionCursor implements PostingIterator {
+
+		/** The cursors of each word. */
+		private final List<PostingIterator> cursors;
+
+		/** The current location id. */
+		private int doc;
+
+		/**
+		 * Instantiates a new conjunction cursor positioned on the first shared
+		 * location.
+		 *
+		 * @param cursors the cursors of each word
+		 */
+		public ConjunctionCursor(List<PostingIterator> cursors) {
+			this.cursors = cursors;
+			this.doc = align(cursors.get(0).doc());
+		}
+
+		/**
+		 * Leapfrogs every cursor to the first location at or after the target that
+		 * they all share.
+		 *
+		 * @param target the target location id
+		 * @return the shared location id, or {@link #NO_MORE}
+		 */
+		private int align(int target) {
+			int i = 0;
+			int agreed = 0;
+			while (target != NO_MORE && agreed < cursors.size()) {
+				int found = cursors.get(i).advance(target);
+				if (found == target) {
+					agreed++;
+				} else {
+					target = found;
+					agreed = 1;
+				}
+				i = (i + 1) % cursors.size();
+			}
+			return target;
+		}
+
+		@Override
+		public int doc() {
+			return doc;
+		}
+
+		@Override
+		public int frequency() {
+			int frequency = 0;
+			for (PostingIterator cursor : cursors) {
+				frequency += cursor.frequency();
+			}
+			return frequency;
+		}
+
+		@Override
+		public double score(ScoringModel model) {
+			double score = 0;
+			for (PostingIterator cursor : cursors) {
+				score += cursor.score(model);
+			}
+			return score;
+		}
+
+		@Override
+		public int next() {
+			if (doc != NO_MORE) {
+				doc = align(doc + 1);
+			}
+			return doc;
+		}
+
+		@Override
+		public int advance(int target) {
+			if (target > doc) {
+				doc = align(target);
+			}
+			return doc;
+		}
+
+		@Override
+		public long visited() {
+			long visited = 0;
+			for (PostingIterator cursor : cursors) {
+				visited += cursor.visited();
+			}
+			return visited;
+		}
+	}
+}
@@ -0,0 +1,368 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The Class CBORReader reads the files written by {@link CBORWriter} back into
+ * the same maps the index and the search builders write as JSON. Any CBOR
+ * encoder may produce the files as long as every item has a definite length;
+ * map entries the reader does not know are skipped. Results read back keep
+ * their location, count and score, but not the total number of words they were
+ * scored against.
+ */
+public class CBORReader {
+
+	/** The size of the input buffers. */
+	private static final int BUFFER = 1 << 16;
+
+	/** The input. */
+	private final DataInputStream in;
+
+	/** The path, for error messages. */
+	private final Path path;
+
+	/**
+	 * Instantiates a new reader.
+	 *
+	 * @param in   the input
+	 * @param path the path, for error messages
+	 */
+	private CBORReader(DataInputStream in, Path path) {
+		this.in = in;
+		this.path = path;
+	}
+
+	/**
+	 * Opens a file for reading.
+	 *
+	 * @param path the path
+	 * @return the input
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static DataInputStream open(Path path) throws IOException {
+		return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER));
+	}
+
+	/**
+	 * Reads an index file.
+	 *
+	 * @param path the path
+	 * @return the positions of each word by location
+	 * @throws IOException if the file is not a valid index file
+	 */
+	public static TreeMap<String, TreeMap<String, TreeSet<Integer>>> readInvertedIndex(Path path) throws IOException {
+		try (DataInputStream in = open(path)) {
+			CBORReader reader = new CBORReader(in, path);
+			TreeMap<String, TreeMap<String, TreeSet<Integer>>> index = new TreeMap<>();
+			long terms = reader.readStart(CBORWriter.MAP);
+			for (long term = 0; term < terms; term++) {
+				String word = reader.readText();
+				TreeMap<String, TreeSet<Integer>> wordMap = new TreeMap<>();
+				long postings = reader.readHead(CBORWriter.MAP);
+				for (long posting = 0; posting < postings; posting++) {
+					String location = reader.readText();
+					TreeSet<Integer> positions = new TreeSet<>();
+					long size = reader.readHead(CBORWriter.ARRAY);
+					for (long i = 0; i < size; i++) {
+						positions.add(reader.readInt());
+					}
+					wordMap.put(location, positions);
+				}
+				index.put(word, wordMap);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Reads a locations file.
+	 *
+	 * @param path the path
+	 * @return the word count of each location
+	 * @throws IOException if the file is not a valid locations file
+	 */
+	public static TreeMap<String, Integer> readLocations(Path path) throws IOException {
+		try (DataInputStream in = open(path)) {
+			CBORReader reader = new CBORReader(in, path);
+			TreeMap<String, Integer> wordCounts = new TreeMap<>();
+			long locations = reader.readStart(CBORWriter.MAP);
+			for (long i = 0; i < locations; i++) {
+				wordCounts.put(reader.readText(), reader.readInt());
+			}
+			return wordCounts;
+		}
+	}
+
+	/**
+	 * Reads a results file.
+	 *
+	 * @param path the path
+	 * @return the results by query
+	 * @throws IOException if the file is not a valid results file
+	 */
+	public static TreeMap<String, List<SearchResult>> readQuery(Path path) throws IOException {
+		try (DataInputStream in = open(path)) {
+			CBORReader reader = new CBORReader(in, path);
+			TreeMap<String, List<SearchResult>> queryResult = new TreeMap<>();
+			long queries = reader.readStart(CBORWriter.ARRAY);
+			for (long query = 0; query < queries; query++) {
+				String key = null;
+				List<SearchResult> results = new ArrayList<>();
+				long fields = reader.readHead(CBORWriter.MAP);
+				for (long field = 0; field < fields; field++) {
+					switch (reader.readText()) {
+					case "queries":
+						key = reader.readText();
+						break;
+					case "results":
+						long size = reader.readHead(CBORWriter.ARRAY);
+						for (long i = 0; i < size; i++) {
+							results.add(reader.readResult());
+						}
+						break;
+					default:
+						reader.skip();
+					}
+				}
+				if (key == null) {
+					throw reader.malformed("query without a key");
+				}
+				queryResult.put(key, results);
+			}
+			return queryResult;
+		}
+	}
+
+	/**
+	 * Reads one result.
+	 *
+	 * @return the result
+	 * @throws IOException if the result is malformed
+	 */
+	private SearchResult readResult() throws IOException {
+		String where = null;
+		int count = 0;
+		double score = 0;
+		long fields = readHead(CBORWriter.MAP);
+		for (long field = 0; field < fields; field++) {
+			switch (readText()) {
+			case "where":
+				where = readText();
+				break;
+			case "count":
+				count = readInt();
+				break;
+			case "score":
+				score = readDouble();
+				break;
+			default:
+				skip();
+			}
+		}
+		if (where == null) {
+			throw malformed("result without a location");
+		}
+		return new SearchResult(where, count, 0, score);
+	}
+
+	/**
+	 * Reads the head of the top level item, after the optional self-described
+	 * CBOR tag.
+	 *
+	 * @param major the expected major type
+	 * @return the length of the item
+	 * @throws IOException if the item has another type
+	 */
+	private long readStart(int major) throws IOException {
+		int initial = in.readUnsignedByte();
+		if (initial >>> 5 == CBORWriter.TAG) {
+			long tag = readArgument(initial);
+			if (tag != CBORWriter.SELF_DESCRIBED) {
+				throw malformed("unexpected tag " + tag);
+			}
+			initial = in.readUnsignedByte();
+		}
+		return expect(initial, major);
+	}
+
+	/**
+	 * Reads the head of an item of the expected major type.
+	 *
+	 * @param major the expected major type
+	 * @return the value or length of the item
+	 * @throws IOException if the item has another type
+	 */
+	private long readHead(int major) throws IOException {
+		return expect(in.readUnsignedByte(), major);
+	}
+
+	/**
+	 * Checks the major type of an initial byte, then reads its argument.
+	 *
+	 * @param initial the initial byte
+	 * @param major   the expected major type
+	 * @return the argument
+	 * @throws IOException if the item has another type
+	 */
+	private long expect(int initial, int major) throws IOException {
+		if (initial >>> 5 != major) {
+			throw malformed("expected major type " + major + " but found " + (initial >>> 5));
+		}
+		return readArgument(initial);
+	}
+
+	/**
+	 * Reads the argument following an initial byte.
+	 *
+	 * @param initial the initial byte
+	 * @return the argument
+	 * @throws IOException if the argument is indefinite or too large
+	 */
+	private long readArgument(int initial) throws IOException {
+		int info = initial & 0x1F;
+		long value;
+		if (info < 24) {
+			value = info;
+		} else if (info == 24) {
+			value = in.readUnsignedByte();
+		} else if (info == 25) {
+			value = in.readUnsignedShort();
+		} else if (info == 26) {
+			value = in.readInt() & 0xFFFFFFFFL;
+		} else if (info == 27) {
+			value = in.readLong();
+		} else {
+			throw malformed("unsupported additional information " + info);
+		}
+		if (value < 0) {
+			throw malformed("argument too large");
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a text string.
+	 *
+	 * @return the text
+	 * @throws IOException if the item is not a text string
+	 */
+	private String readText() throws IOException {
+		long length = readHead(CBORWriter.TEXT);
+		if (length > Integer.MAX_VALUE) {
+			throw malformed("text too long");
+		}
+		byte[] bytes = in.readNBytes((int) length);
+		if (bytes.length < length) {
+			throw malformed("truncated text");
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads an unsigned integer that fits in an int.
+	 *
+	 * @return the value
+	 * @throws IOException if the item is not such an integer
+	 */
+	private int readInt() throws IOException {
+		long value = readHead(CBORWriter.UNSIGNED);
+		if (value > Integer.MAX_VALUE) {
+			throw malformed("integer too large");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Reads a floating point number of any precision, or an unsigned integer.
+	 *
+	 * @return the value
+	 * @throws IOException if the item is not a number
+	 */
+	private double readDouble() throws IOException {
+		int initial = in.readUnsignedByte();
+		switch (initial) {
+		case CBORWriter.SIMPLE << 5 | 25:
+			return halfToDouble(in.readUnsignedShort());
+		case CBORWriter.SIMPLE << 5 | 26:
+			return in.readFloat();
+		case CBORWriter.SIMPLE << 5 | 27:
+			return in.readDouble();
+		default:
+			return expect(initial, CBORWriter.UNSIGNED);
+		}
+	}
+
+	/**
+	 * Converts a half precision float to a double.
+	 *
+	 * @param half the bits of the half precision float
+	 * @return the value
+	 */
+	private static double halfToDouble(int half) {
+		int exponent = (half >>> 10) & 0x1F;
+		int mantissa = half & 0x3FF;
+		double value;
+		if (exponent == 0) {
+			value = Math.scalb((double) mantissa, -24);
+		} else if (exponent == 31) {
+			value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+		} else {
+			value = Math.scalb((double) (mantissa | 0x400), exponent - 25);
+		}
+		return (half & 0x8000) != 0 ? -value : value;
+	}
+
+	/**
+	 * Skips an item and everything it contains.
+	 *
+	 * @throws IOException if the item is malformed
+	 */
+	private void skip() throws IOException {
+		int initial = in.readUnsignedByte();
+		int major = initial >>> 5;
+		if (major == CBORWriter.SIMPLE) {
+			int info = initial & 0x1F;
+			in.skipNBytes(info == 24 ? 1 : info == 25 ? 2 : info == 26 ? 4 : info == 27 ? 8 : 0);
+			return;
+		}
+		long value = readArgument(initial);
+		switch (major) {
+		case CBORWriter.BYTES:
+		case CBORWriter.TEXT:
+			in.skipNBytes(value);
+			break;
+		case CBORWriter.ARRAY:
+			for (long i = 0; i < value; i++) {
+				skip();
+			}
+			break;
+		case CBORWriter.MAP:
+			for (long i = 0; i < value * 2; i++) {
+				skip();
+			}
+			break;
+		case CBORWriter.TAG:
+			skip();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Creates the exception thrown for a malformed file.
+	 *
+	 * @param problem the problem
+	 * @return the exception
+	 */
+	private IOException malformed(String problem) {
+		return new IOException("Malformed CBOR file " + path + ": " + problem);
+	}
+}
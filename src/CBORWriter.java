@@ -0,0 +1,174 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * The Class CBORWriter writes the index, the locations and the query results as
+ * CBOR (RFC 8949), with the same structure as their JSON files: maps of words,
+ * locations and positions, a map of locations to word counts, and an array of
+ * queries with their results. Every file starts with the self-described CBOR
+ * tag, and every item has a definite length. {@link CBORReader} reads the files
+ * back.
+ */
+public class CBORWriter {
+
+	/** The major type of unsigned integers. */
+	static final int UNSIGNED = 0;
+
+	/** The major type of byte strings. */
+	static final int BYTES = 2;
+
+	/** The major type of text strings. */
+	static final int TEXT = 3;
+
+	/** The major type of arrays. */
+	static final int ARRAY = 4;
+
+	/** The major type of maps. */
+	static final int MAP = 5;
+
+	/** The major type of tags. */
+	static final int TAG = 6;
+
+	/** The major type of floats and simple values. */
+	static final int SIMPLE = 7;
+
+	/** The tag marking a file as CBOR. */
+	static final int SELF_DESCRIBED = 55799;
+
+	/** The size of the output buffers. */
+	private static final int BUFFER = 1 << 16;
+
+	/**
+	 * Writes the words of a snapshot, their locations and their positions.
+	 *
+	 * @param snapshot the snapshot
+	 * @param path     the path
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asInvertedIndex(IndexSnapshot snapshot, Path path) throws IOException {
+		try (DataOutputStream out = open(path)) {
+			writeHead(MAP, snapshot.terms(), out);
+			for (int term = 0; term < snapshot.terms(); term++) {
+				writeText(snapshot.term(term), out);
+				int[] postings = snapshot.postings(term);
+				writeHead(MAP, postings.length, out);
+				for (int posting = 0; posting < postings.length; posting++) {
+					writeText(snapshot.location(postings[posting]), out);
+					int[] positions = snapshot.positions(term, posting);
+					writeHead(ARRAY, positions.length, out);
+					for (int position : positions) {
+						writeHead(UNSIGNED, position, out);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the locations of a snapshot and their word counts.
+	 *
+	 * @param snapshot the snapshot
+	 * @param path     the path
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asLocations(IndexSnapshot snapshot, Path path) throws IOException {
+		try (DataOutputStream out = open(path)) {
+			writeHead(MAP, snapshot.documents(), out);
+			for (int document = 0; document < snapshot.documents(); document++) {
+				writeText(snapshot.location(document), out);
+				writeHead(UNSIGNED, snapshot.length(document), out);
+			}
+		}
+	}
+
+	/**
+	 * Writes the results of each query.
+	 *
+	 * @param queryResult the results by query
+	 * @param path        the path
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asQuery(TreeMap<String, List<SearchResult>> queryResult, Path path) throws IOException {
+		try (DataOutputStream out = open(path)) {
+			writeHead(ARRAY, queryResult.size(), out);
+			for (Entry<String, List<SearchResult>> entry : queryResult.entrySet()) {
+				writeHead(MAP, 2, out);
+				writeText("queries", out);
+				writeText(entry.getKey(), out);
+				writeText("results", out);
+				writeHead(ARRAY, entry.getValue().size(), out);
+				for (SearchResult result : entry.getValue()) {
+					writeHead(MAP, 3, out);
+					writeText("where", out);
+					writeText(result.getLocations(), out);
+					writeText("count", out);
+					writeHead(UNSIGNED, result.getCount(), out);
+					writeText("score", out);
+					out.write(SIMPLE << 5 | 27);
+					out.writeDouble(result.getScore());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens a file and writes the self-described CBOR tag.
+	 *
+	 * @param path the path
+	 * @return the output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static DataOutputStream open(Path path) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER));
+		writeHead(TAG, SELF_DESCRIBED, out);
+		return out;
+	}
+
+	/**
+	 * Writes the head of an item: its major type and its value or length, in the
+	 * fewest bytes possible.
+	 *
+	 * @param major the major type
+	 * @param value the non-negative value or length
+	 * @param out   the output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void writeHead(int major, long value, DataOutputStream out) throws IOException {
+		int type = major << 5;
+		if (value < 24) {
+			out.write(type | (int) value);
+		} else if (value < 1 << 8) {
+			out.write(type | 24);
+			out.write((int) value);
+		} else if (value < 1 << 16) {
+			out.write(type | 25);
+			out.writeShort((int) value);
+		} else if (value < 1L << 32) {
+			out.write(type | 26);
+			out.writeInt((int) value);
+		} else {
+			out.write(type | 27);
+			out.writeLong(value);
+		}
+	}
+
+	/**
+	 * Writes a text string.
+	 *
+	 * @param text the text
+	 * @param out  the output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void writeText(String text, DataOutputStream out) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		writeHead(TEXT, bytes.length, out);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,226 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The Class ColumnarReader reads the files written by {@link ColumnarWriter}
+ * back into the same maps the index and the search builders write as JSON.
+ * Results read back keep their location, count and score, but not the total
+ * number of words they were scored against.
+ */
+public class ColumnarReader {
+
+	/** The size of the input buffers. */
+	private static final int BUFFER = 1 << 16;
+
+	/**
+	 * Reads an index file.
+	 *
+	 * @param path the path
+	 * @return the positions of each word by location
+	 * @throws IOException if the file is not a valid index file
+	 */
+	public static TreeMap<String, TreeMap<String, TreeSet<Integer>>> readInvertedIndex(Path path) throws IOException {
+		try (DataInputStream in = open(path, ColumnarWriter.INDEX)) {
+			String[] locations = readStrings(in);
+			String[] terms = readStrings(in);
+			int[] frequencies = readVarints(terms.length, in);
+			int[][] postings = new int[terms.length][];
+			for (int term = 0; term < terms.length; term++) {
+				postings[term] = new int[frequencies[term]];
+				int previous = 0;
+				for (int posting = 0; posting < frequencies[term]; posting++) {
+					previous += readVarint(in);
+					postings[term][posting] = checkIndex(previous, locations.length);
+				}
+			}
+			int[][] counts = new int[terms.length][];
+			for (int term = 0; term < terms.length; term++) {
+				counts[term] = readVarints(frequencies[term], in);
+			}
+			TreeMap<String, TreeMap<String, TreeSet<Integer>>> index = new TreeMap<>();
+			for (int term = 0; term < terms.length; term++) {
+				TreeMap<String, TreeSet<Integer>> wordMap = new TreeMap<>();
+				for (int posting = 0; posting < frequencies[term]; posting++) {
+					TreeSet<Integer> positions = new TreeSet<>();
+					int previous = 0;
+					for (int i = 0; i < counts[term][posting]; i++) {
+						previous += readVarint(in);
+						positions.add(previous);
+					}
+					wordMap.put(locations[postings[term][posting]], positions);
+				}
+				index.put(terms[term], wordMap);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Reads a locations file.
+	 *
+	 * @param path the path
+	 * @return the word count of each location
+	 * @throws IOException if the file is not a valid locations file
+	 */
+	public static TreeMap<String, Integer> readLocations(Path path) throws IOException {
+		try (DataInputStream in = open(path, ColumnarWriter.LOCATIONS)) {
+			String[] locations = readStrings(in);
+			TreeMap<String, Integer> wordCounts = new TreeMap<>();
+			for (String location : locations) {
+				wordCounts.put(location, readVarint(in));
+			}
+			return wordCounts;
+		}
+	}
+
+	/**
+	 * Reads a results file.
+	 *
+	 * @param path the path
+	 * @return the results by query
+	 * @throws IOException if the file is not a valid results file
+	 */
+	public static TreeMap<String, List<SearchResult>> readQuery(Path path) throws IOException {
+		try (DataInputStream in = open(path, ColumnarWriter.RESULTS)) {
+			String[] locations = readStrings(in);
+			String[] queries = readStrings(in);
+			int[] sizes = readVarints(queries.length, in);
+			long total = 0;
+			for (int size : sizes) {
+				total += size;
+			}
+			if (total > Integer.MAX_VALUE) {
+				throw new IOException("Too many results in " + path);
+			}
+			int[] ids = new int[(int) total];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = checkIndex(readVarint(in), locations.length);
+			}
+			int[] counts = readVarints(ids.length, in);
+			TreeMap<String, List<SearchResult>> queryResult = new TreeMap<>();
+			int next = 0;
+			for (int query = 0; query < queries.length; query++) {
+				List<SearchResult> results = new ArrayList<>(sizes[query]);
+				for (int i = 0; i < sizes[query]; i++, next++) {
+					results.add(new SearchResult(locations[ids[next]], counts[next], 0, in.readDouble()));
+				}
+				queryResult.put(queries[query], results);
+			}
+			return queryResult;
+		}
+	}
+
+	/**
+	 * Opens a file and checks its header.
+	 *
+	 * @param path the path
+	 * @param kind the expected kind byte
+	 * @return the input, positioned after the header
+	 * @throws IOException if the header does not match
+	 */
+	private static DataInputStream open(Path path, int kind) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER));
+		byte[] header = new byte[4];
+		try {
+			in.readFully(header);
+		} catch (EOFException e) {
+			in.close();
+			throw new IOException("Not a columnar file: " + path, e);
+		}
+		if (header[0] != 'S' || header[1] != 'E' || header[2] != kind) {
+			in.close();
+			throw new IOException("Not a columnar file of kind " + (char) kind + ": " + path);
+		}
+		if (header[3] != ColumnarWriter.VERSION) {
+			in.close();
+			throw new IOException("Unsupported columnar version " + header[3] + ": " + path);
+		}
+		return in;
+	}
+
+	/**
+	 * Reads an unsigned LEB128 varint.
+	 *
+	 * @param in the input
+	 * @return the value
+	 * @throws IOException if the input ends or the value is too large
+	 */
+	private static int readVarint(InputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (value < 0) {
+					break;
+				}
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Reads a column of varints.
+	 *
+	 * @param size the number of values
+	 * @param in   the input
+	 * @return the values
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static int[] readVarints(int size, InputStream in) throws IOException {
+		int[] values = new int[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = readVarint(in);
+		}
+		return values;
+	}
+
+	/**
+	 * Reads a count followed by a column of strings.
+	 *
+	 * @param in the input
+	 * @return the strings
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static String[] readStrings(DataInputStream in) throws IOException {
+		String[] strings = new String[readVarint(in)];
+		for (int i = 0; i < strings.length; i++) {
+			int length = readVarint(in);
+			byte[] bytes = in.readNBytes(length);
+			if (bytes.length < length) {
+				throw new EOFException();
+			}
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return strings;
+	}
+
+	/**
+	 * Checks an id read from a file refers to an entry of a table.
+	 *
+	 * @param id   the id
+	 * @param size the size of the table
+	 * @return the id
+	 * @throws IOException if the id is out of range
+	 */
+	private static int checkIndex(int id, int size) throws IOException {
+		if (id < 0 || id >= size) {
+			throw new IOException("Malformed columnar file, id " + id + " out of " + size);
+		}
+		return id;
+	}
+}
@@ -0,0 +1,194 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The Class ColumnarWriter writes the index, the locations and the query results
+ * in a compact binary layout read by {@link ColumnarReader}. A file starts with
+ * the magic bytes "SE", a kind byte ('I', 'L' or 'R') and a version byte, and
+ * the records follow column by column: every value of one field, then every
+ * value of the next. Integers are unsigned LEB128 varints, sorted ids and
+ * positions are stored as differences from the previous one, strings are a
+ * varint byte length followed by UTF-8 bytes, scores are 8 byte big-endian
+ * doubles, and locations are stored once in a table and referred to by id.
+ */
+public class ColumnarWriter {
+
+	/** The version of the layout. */
+	public static final int VERSION = 1;
+
+	/** The kind byte of an index file. */
+	public static final int INDEX = 'I';
+
+	/** The kind byte of a locations file. */
+	public static final int LOCATIONS = 'L';
+
+	/** The kind byte of a results file. */
+	public static final int RESULTS = 'R';
+
+	/** The size of the output buffers. */
+	private static final int BUFFER = 1 << 16;
+
+	/**
+	 * Writes the words of a snapshot, their locations and their positions.
+	 *
+	 * @param snapshot the snapshot
+	 * @param path     the path
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asInvertedIndex(IndexSnapshot snapshot, Path path) throws IOException {
+		try (DataOutputStream out = open(path, INDEX)) {
+			writeVarint(snapshot.documents(), out);
+			for (int document = 0; document < snapshot.documents(); document++) {
+				writeString(snapshot.location(document), out);
+			}
+			int terms = snapshot.terms();
+			writeVarint(terms, out);
+			for (int term = 0; term < terms; term++) {
+				writeString(snapshot.term(term), out);
+			}
+			for (int term = 0; term < terms; term++) {
+				writeVarint(snapshot.documentFrequency(term), out);
+			}
+			for (int term = 0; term < terms; term++) {
+				int previous = 0;
+				for (int document : snapshot.postings(term)) {
+					writeVarint(document - previous, out);
+					previous = document;
+				}
+			}
+			for (int term = 0; term < terms; term++) {
+				for (int posting = 0; posting < snapshot.documentFrequency(term); posting++) {
+					writeVarint(snapshot.positions(term, posting).length, out);
+				}
+			}
+			for (int term = 0; term < terms; term++) {
+				for (int posting = 0; posting < snapshot.documentFrequency(term); posting++) {
+					int previous = 0;
+					for (int position : snapshot.positions(term, posting)) {
+						writeVarint(position - previous, out);
+						previous = position;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the locations of a snapshot and their word counts.
+	 *
+	 * @param snapshot the snapshot
+	 * @param path     the path
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asLocations(IndexSnapshot snapshot, Path path) throws IOException {
+		try (DataOutputStream out = open(path, LOCATIONS)) {
+			writeVarint(snapshot.documents(), out);
+			for (int document = 0; document < snapshot.documents(); document++) {
+				writeString(snapshot.location(document), out);
+			}
+			for (int document = 0; document < snapshot.documents(); document++) {
+				writeVarint(snapshot.length(document), out);
+			}
+		}
+	}
+
+	/**
+	 * Writes the results of each query.
+	 *
+	 * @param queryResult the results by query
+	 * @param path        the path
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asQuery(TreeMap<String, List<SearchResult>> queryResult, Path path) throws IOException {
+		TreeSet<String> locations = new TreeSet<>();
+		for (List<SearchResult> results : queryResult.values()) {
+			for (SearchResult result : results) {
+				locations.add(result.getLocations());
+			}
+		}
+		HashMap<String, Integer> ids = new HashMap<>();
+		try (DataOutputStream out = open(path, RESULTS)) {
+			writeVarint(locations.size(), out);
+			for (String location : locations) {
+				ids.put(location, ids.size());
+				writeString(location, out);
+			}
+			writeVarint(queryResult.size(), out);
+			for (String query : queryResult.keySet()) {
+				writeString(query, out);
+			}
+			for (List<SearchResult> results : queryResult.values()) {
+				writeVarint(results.size(), out);
+			}
+			for (List<SearchResult> results : queryResult.values()) {
+				for (SearchResult result : results) {
+					writeVarint(ids.get(result.getLocations()), out);
+				}
+			}
+			for (List<SearchResult> results : queryResult.values()) {
+				for (SearchResult result : results) {
+					writeVarint(result.getCount(), out);
+				}
+			}
+			for (List<SearchResult> results : queryResult.values()) {
+				for (SearchResult result : results) {
+					out.writeDouble(result.getScore());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens a file and writes its header.
+	 *
+	 * @param path the path
+	 * @param kind the kind byte
+	 * @return the output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static DataOutputStream open(Path path, int kind) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER));
+		out.write('S');
+		out.write('E');
+		out.write(kind);
+		out.write(VERSION);
+		return out;
+	}
+
+	/**
+	 * Writes a non-negative integer as an unsigned LEB128 varint.
+	 *
+	 * @param value the value
+	 * @param out   the output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void writeVarint(int value, OutputStream out) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Writes a string as its UTF-8 byte length and bytes.
+	 *
+	 * @param text the string
+	 * @param out  the output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void writeString(String text, OutputStream out) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length, out);
+		out.write(bytes);
+	}
+}
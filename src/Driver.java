@@ -23,10 +23,34 @@ public class Driver {
 		Logger logger = LogManager.getLogger();
 		ArgumentMap parse = new ArgumentMap(args);
 		int threads = DEFAULT;
+		int writers = 1;
 		InvertedIndex index = null;
 		SearchBuilderInterface searchBuilder = null;
+		QueryCache cache = new QueryCache(parse.getValue("-cache", QueryCache.DEFAULT));
+		ScoringModel model;
+		try {
+			model = ScoringModel.forName(parse.getString("-scoring"));
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage() + ", expected bm25 or tfidf");
+			return;
+		}
 //		WorkQueue queue = null;
 
+		OutputFormat format;
+		try {
+			format = OutputFormat.forName(parse.getString("-format"));
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage() + ", expected json, columnar or cbor");
+			return;
+		}
+		if (parse.hasFlag("-stream") && format != OutputFormat.JSON) {
+			System.out.println("Unable to stream results as " + format.name().toLowerCase() + ", expected json");
+			return;
+		}
+		if (format == OutputFormat.JSON && parse.hasFlag("-compact")) {
+			format = OutputFormat.COMPACT_JSON;
+		}
+
 		if (parse.hasFlag("-threads") && parse.hasValue("-threads")) {
 			if (parse.hasFlag("-threads")) {
 				threads = parse.getValue("-threads", threads);
@@ -34,9 +58,11 @@ public class Driver {
 					threads = DEFAULT;
 				}
 			}
+			writers = threads;
 			ThreadSafeInvertedIndex threadSafe = new ThreadSafeInvertedIndex();
 			index = threadSafe;
-			searchBuilder = new TSSearchBuilder(threadSafe, threads);
+			index.setRecordOffsets(parse.hasFlag("-offsets"));
+			searchBuilder = new TSSearchBuilder(threadSafe, threads, cache, model);
 
 			if (parse.hasFlag("-path")) {
 				if (parse.hasValue("-path")) {
@@ -53,7 +79,8 @@ public class Driver {
 		} else {
 
 			index = new InvertedIndex();
-			searchBuilder = new SearchBuilder(index);
+			index.setRecordOffsets(parse.hasFlag("-offsets"));
+			searchBuilder = new SearchBuilder(index, cache, model);
 
 			if (parse.hasFlag("-path")) {
 				if (parse.hasValue("-path")) {
@@ -69,28 +96,51 @@ public class Driver {
 			}
 		}
 
+		if (parse.hasFlag("-prefixes")) {
+			long budget = parse.getValue("-prefixes", 64) * 1024L * 1024L;
+			try {
+				Path log = parse.getPath("-prefixlog");
+				index.setPrefixAccelerator(budget, log == null ? null : PrefixAccelerator.readQueryLog(log));
+			} catch (IOException e) {
+				System.out.println("Unable to read query log from path: " + parse.getPath("-prefixlog"));
+			}
+		}
+
 		if (parse.hasFlag("-index")) {
 			Path output = parse.getPath("-index", Paths.get("index.json"));
 			try {
-				index.toJSON(output);
+				index.toFormat(output, format, writers);
 			} catch (IOException e) {
 				System.out.println("Unable to build index from path: " + parse.getPath("-index"));
 			}
 		}
 
+		searchBuilder.setBudget(parse.getValue("-timeout", 0), parse.getValue("-maxpostings", 0));
+		searchBuilder.setOperators(parse.hasFlag("-operators"));
+
+		boolean stream = parse.hasFlag("-stream") && parse.hasFlag("-search") && parse.hasFlag("-results");
+
 		if (parse.hasFlag("-search")) {
 			Path search = parse.getPath("-search");
 			try {
-				searchBuilder.queryFile(search, parse.hasFlag("-exact"));
+				if (stream) {
+					// write each query's results as soon as it is searched
+					Path results = parse.getPath("-results", Paths.get("results.json"));
+					searchBuilder.queryFile(search, parse.hasFlag("-exact"), results,
+							format == OutputFormat.COMPACT_JSON);
+				} else {
+					searchBuilder.queryFile(search, parse.hasFlag("-exact"));
+				}
 			} catch (IOException e) {
 				System.out.println("Unable to build results from path: " + parse.getPath("-search"));
+				logger.warn("Searching {} failed", search, e);
 			}
 		}
 
-		if (parse.hasFlag("-results")) {
+		if (parse.hasFlag("-results") && !stream) {
 			Path results = parse.getPath("-results", Paths.get("results.json"));
 			try {
-				searchBuilder.toJSON(results);
+				searchBuilder.toFormat(results, format);
 			} catch (IOException e) {
 				System.out.println("Could not write results file");
 			}
@@ -99,12 +149,37 @@ public class Driver {
 		if (parse.hasFlag("-locations")) {
 			Path locations = parse.getPath("-locations", Paths.get("locations.json"));
 			try {
-				index.locJSON(locations);
+				index.locFormat(locations, format);
 			} catch (IOException e) {
 				System.out.println("Unable to build locations from path: " + parse.getPath("-locations"));
 			}
 		}
 
+		if (parse.hasFlag("-port")) {
+			ThreadSafeInvertedIndex served;
+			if (index instanceof ThreadSafeInvertedIndex) {
+				served = (ThreadSafeInvertedIndex) index;
+			} else {
+				served = new ThreadSafeInvertedIndex();
+				served.setRecordOffsets(index.isRecordingOffsets());
+				served.addAll(index);
+			}
+			try {
+				AdmissionController admission = new AdmissionController(parse.getValue("-limit", threads));
+				SearchServer server = new SearchServer(served, parse.getValue("-port", 8080), model, admission,
+						cache);
+				server.setOperators(parse.hasFlag("-operators"));
+				server.setBudget(parse.getValue("-timeout", 0), parse.getValue("-maxpostings", 0));
+				server.start();
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+			} catch (IOException e) {
+				System.out.println("Unable to start server on port: " + parse.getString("-port"));
+			}
+		}
+
+		logger.debug("Query cache: {}", cache);
+		logger.debug("Truncated searches: {}", searchBuilder.getTruncated());
+
 		long elapsed = System.nanoTime() - start;
 		System.out.println("Seconds: " + (elapsed / 1000000000.0));
 	}
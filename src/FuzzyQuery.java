@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * The Class FuzzyQuery matches locations containing words within an edit
+ * distance of a query word, written <code>word~</code> for one edit or
+ * <code>word~2</code> for two, along with any plain words on the same line.
+ * Matching words are found by intersecting a {@link LevenshteinAutomaton} with
+ * the trie of the term dictionary.
+ */
+public class FuzzyQuery implements Query {
+
+	/** The marker following a fuzzy word. */
+	public static final char FUZZY = '~';
+
+	/** The largest edit distance allowed. */
+	public static final int MAX_DISTANCE = 2;
+
+	/** The stemmed fuzzy words and their edit distances. */
+	private final TreeMap<String, Integer> fuzzy;
+
+	/** The stemmed plain words. */
+	private final TreeSet<String> words;
+
+	/**
+	 * Instantiates a new fuzzy query.
+	 *
+	 * @param fuzzy the stemmed fuzzy words and their edit distances
+	 * @param words the stemmed plain words
+	 */
+	public FuzzyQuery(TreeMap<String, Integer> fuzzy, TreeSet<String> words) {
+		this.fuzzy = fuzzy;
+		this.words = words;
+	}
+
+	/**
+	 * Parses a query line as a fuzzy query if any word is marked as fuzzy.
+	 *
+	 * @param line    the query line
+	 * @param stemmer the stemmer to use
+	 * @return the fuzzy query, or null if no word is fuzzy
+	 */
+	public static FuzzyQuery parse(String line, Stemmer stemmer) {
+		if (line.indexOf(FUZZY) < 0) {
+			return null;
+		}
+
+		TreeMap<String, Integer> fuzzy = new TreeMap<>();
+		TreeSet<String> words = new TreeSet<>();
+		for (String token : TextParser.split(line)) {
+			int marker = token.indexOf(FUZZY);
+			if (marker < 0) {
+				TextFileStemmer.stemLine(token, stemmer, words);
+				continue;
+			}
+
+			int distance = 1;
+			String suffix = token.substring(marker + 1);
+			if (!suffix.isEmpty()) {
+				try {
+					distance = Integer.parseInt(suffix);
+				} catch (NumberFormatException e) {
+					distance = 1;
+				}
+			}
+			distance = Math.max(0, Math.min(MAX_DISTANCE, distance));
+			for (String word : TextFileStemmer.stemLine(token.substring(0, marker), stemmer)) {
+				fuzzy.merge(word, distance, Math::max);
+			}
+		}
+
+		return fuzzy.isEmpty() ? null : new FuzzyQuery(fuzzy, words);
+	}
+
+	@Override
+	public TopResults search(IndexSnapshot snapshot, boolean exact, ScoringModel model, int k, SearchBudget budget) {
+		int[] terms = snapshot.matchingTerms(words, exact);
+		for (Entry<String, Integer> entry : fuzzy.entrySet()) {
+			LevenshteinAutomaton automaton = new LevenshteinAutomaton(entry.getKey(), entry.getValue());
+			int[] matched = automaton.intersect(snapshot.getDictionary());
+			int size = terms.length;
+			terms = Arrays.copyOf(terms, size + matched.length);
+			System.arraycopy(matched, 0, terms, size, matched.length);
+		}
+		return snapshot.searchTerms(terms, model, k, budget);
+	}
+
+	@Override
+	public String toString() {
+		List<String> all = new ArrayList<>();
+		for (Entry<String, Integer> entry : fuzzy.entrySet()) {
+			all.add(entry.getKey() + FUZZY + entry.getValue());
+		}
+		all.addAll(words);
+		return String.join(" ", all);
+	}
+}
@@ -0,0 +1,1025 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The Class IndexSnapshot is an immutable, array based copy of an
+ * {@link InvertedIndex} taken at one generation. Locations and words are
+ * numbered in sorted order, and every word stores its postings as sorted
+ * location ids and the matching word counts, so collection statistics and
+ * scores can be computed with array lookups instead of map traversals.
+ */
+public class IndexSnapshot {
+
+	/** The number of postings above which a search runs in parallel. */
+	public static final long PARALLEL_THRESHOLD = 1 << 16;
+
+	/** The number of postings visited between checks of a search budget. */
+	public static final int BUDGET_INTERVAL = 4096;
+
+	/** The average postings per word needed to search the best k with WAND. */
+	public static final int WAND_LENGTH = 64;
+
+	/** The generation of the index this snapshot was taken from. */
+	private final long generation;
+
+	/** The locations, sorted. The position of a location is its id. */
+	private final String[] locations;
+
+	/** The number of words in each location. */
+	private final int[] lengths;
+
+	/** The average number of words in a location. */
+	private final double averageLength;
+
+	/** The words, sorted. The position of a word is its id. */
+	private final TermDictionary dictionary;
+
+	/** The sorted location ids of each word. */
+	private final int[][] postings;
+
+	/** The number of times each word appears in each of its locations. */
+	private final int[][] frequencies;
+
+	/** The total number of times each word appears. */
+	private final long[] collectionFrequencies;
+
+	/** The sorted positions of each word in each of its locations. */
+	private final int[][][] positions;
+
+	/** The k-grams of the words, for wildcard patterns, built on first use. */
+	private volatile WildcardIndex wildcards;
+
+	/** The stored postings of expensive short prefixes, built on first use. */
+	private volatile PrefixAccelerator accelerator;
+
+	/** The memory budget for stored prefix postings in bytes, or 0. */
+	private final long prefixBudget;
+
+	/** The number of times each prefix was searched, or null. */
+	private final Map<String, Integer> queryLog;
+
+	/** The most frequent completions of each prefix, built on first use. */
+	private Autocompleter autocompleter;
+
+	/** The highest score of each word in any location, by scoring model. */
+	private final HashMap<String, double[]> maxScores;
+
+	/**
+	 * Takes a snapshot of the index. The wildcard index and the prefix
+	 * accelerator are only built once a search needs them.
+	 *
+	 * @param index      the index
+	 * @param wordCounts the word counts and their locations
+	 * @param generation the generation of the index
+	 * @param budget     the memory budget for stored prefix postings in bytes, or 0
+	 *                   to store none
+	 * @param queryLog   the number of times each prefix was searched, or null
+	 */
+	IndexSnapshot(TreeMap<String, TreeMap<String, TreeSet<Integer>>> index, TreeMap<String, Integer> wordCounts,
+			long generation, long budget, Map<String, Integer> queryLog) {
+		this.generation = generation;
+		this.maxScores = new HashMap<>();
+		this.prefixBudget = budget;
+		this.queryLog = queryLog;
+
+		locations = wordCounts.keySet().toArray(new String[0]);
+		lengths = new int[locations.length];
+		long total = 0;
+		for (int i = 0; i < locations.length; i++) {
+			lengths[i] = wordCounts.get(locations[i]);
+			total += lengths[i];
+		}
+		averageLength = locations.length == 0 ? 0 : (double) total / locations.length;
+
+		dictionary = new TermDictionary(index.keySet().toArray(new String[0]));
+		postings = new int[index.size()][];
+		frequencies = new int[index.size()][];
+		positions = new int[index.size()][][];
+		collectionFrequencies = new long[index.size()];
+		int term = 0;
+		for (TreeMap<String, TreeSet<Integer>> wordMap : index.values()) {
+			postings[term] = new int[wordMap.size()];
+			frequencies[term] = new int[wordMap.size()];
+			positions[term] = new int[wordMap.size()][];
+			int i = 0;
+			for (Entry<String, TreeSet<Integer>> entry : wordMap.entrySet()) {
+				postings[term][i] = Arrays.binarySearch(locations, entry.getKey());
+				frequencies[term][i] = entry.getValue().size();
+				collectionFrequencies[term] += frequencies[term][i];
+				positions[term][i] = new int[entry.getValue().size()];
+				int j = 0;
+				for (int position : entry.getValue()) {
+					positions[term][i][j++] = position;
+				}
+				i++;
+			}
+			term++;
+		}
+	}
+
+	/**
+	 * Gets the generation of the index this snapshot was taken from.
+	 *
+	 * @return the generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the number of locations.
+	 *
+	 * @return the number of locations
+	 */
+	public int documents() {
+		return locations.length;
+	}
+
+	/**
+	 * Returns the location with the given id.
+	 *
+	 * @param document the location id
+	 * @return the location
+	 */
+	public String location(int document) {
+		return locations[document];
+	}
+
+	/**
+	 * Returns the id of a location.
+	 *
+	 * @param location the location
+	 * @return the location id, or a negative number if it is not indexed
+	 */
+	public int documentId(String location) {
+		return Arrays.binarySearch(locations, location);
+	}
+
+	/**
+	 * Returns the number of words in the location with the given id.
+	 *
+	 * @param document the location id
+	 * @return the number of words
+	 */
+	public int length(int document) {
+		return lengths[document];
+	}
+
+	/**
+	 * Gets the average number of words in a location.
+	 *
+	 * @return the average length
+	 */
+	public double getAverageLength() {
+		return averageLength;
+	}
+
+	/**
+	 * Returns the number of words.
+	 *
+	 * @return the number of words
+	 */
+	public int terms() {
+		return dictionary.size();
+	}
+
+	/**
+	 * Gets the dictionary of words.
+	 *
+	 * @return the dictionary
+	 */
+	public TermDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Returns the word with the given id.
+	 *
+	 * @param term the word id
+	 * @return the word
+	 */
+	public String term(int term) {
+		return dictionary.term(term);
+	}
+
+	/**
+	 * Returns the id of a word.
+	 *
+	 * @param word the word
+	 * @return the word id, or -1 if the word is not in the index
+	 */
+	public int termId(String word) {
+		return dictionary.id(word);
+	}
+
+	/**
+	 * Returns the range of ids of the words starting with the prefix. Words
+	 * sharing a prefix are contiguous because ids follow sorted order.
+	 *
+	 * @param prefix the prefix
+	 * @return the first id and one past the last id
+	 */
+	public int[] prefixRange(String prefix) {
+		return dictionary.range(prefix);
+	}
+
+	/**
+	 * Returns the merged postings of every word starting with the prefix, as if
+	 * they were the postings of a single word.
+	 *
+	 * @param prefix the prefix
+	 * @return the location ids and the total word counts in each
+	 */
+	public PrefixPostings prefixPostings(String prefix) {
+		PrefixAccelerator accelerator = getAccelerator();
+		if (accelerator != null) {
+			PrefixPostings stored = accelerator.get(prefix);
+			if (stored != null) {
+				return stored;
+			}
+		}
+		int[] range = prefixRange(prefix);
+		return mergePostings(range[0], range[1]);
+	}
+
+	/**
+	 * Merges the postings of a range of words.
+	 *
+	 * @param low  the first word id
+	 * @param high one past the last word id
+	 * @return the location ids and the total word counts in each
+	 */
+	PrefixPostings mergePostings(int low, int high) {
+		if (high - low == 1) {
+			return new PrefixPostings(postings[low], frequencies[low]);
+		}
+
+		int[] counts = new int[locations.length];
+		BitSet found = new BitSet(locations.length);
+		for (int term = low; term < high; term++) {
+			int[] documents = postings[term];
+			int[] counted = frequencies[term];
+			for (int i = 0; i < documents.length; i++) {
+				counts[documents[i]] += counted[i];
+				found.set(documents[i]);
+			}
+		}
+
+		int[] documents = new int[found.cardinality()];
+		int[] merged = new int[documents.length];
+		int i = 0;
+		for (int document = found.nextSetBit(0); document >= 0; document = found.nextSetBit(document + 1)) {
+			documents[i] = document;
+			merged[i] = counts[document];
+			i++;
+		}
+		return new PrefixPostings(documents, merged);
+	}
+
+	/**
+	 * Gets the k-grams of the words, for wildcard patterns, building them on first
+	 * use.
+	 *
+	 * @return the wildcard index
+	 */
+	public WildcardIndex getWildcardIndex() {
+		WildcardIndex built = wildcards;
+		if (built == null) {
+			synchronized (this) {
+				built = wildcards;
+				if (built == null) {
+					KGramIndex grams = new KGramIndex();
+					for (int term = 0; term < terms(); term++) {
+						grams.add(term(term));
+					}
+					built = grams.freeze(dictionary);
+					wildcards = built;
+				}
+			}
+		}
+		return built;
+	}
+
+	/**
+	 * Gets the stored postings of expensive short prefixes, choosing and merging
+	 * them on first use.
+	 *
+	 * @return the prefix accelerator, or null if disabled
+	 */
+	public PrefixAccelerator getAccelerator() {
+		if (prefixBudget <= 0) {
+			return null;
+		}
+		PrefixAccelerator built = accelerator;
+		if (built == null) {
+			synchronized (this) {
+				built = accelerator;
+				if (built == null) {
+					built = new PrefixAccelerator(this, prefixBudget, queryLog);
+					accelerator = built;
+				}
+			}
+		}
+		return built;
+	}
+
+	/**
+	 * Returns the number of locations containing the word with the given id.
+	 *
+	 * @param term the word id
+	 * @return the document frequency
+	 */
+	public int documentFrequency(int term) {
+		return postings[term].length;
+	}
+
+	/**
+	 * Returns the total number of times the word with the given id appears in
+	 * every location.
+	 *
+	 * @param term the word id
+	 * @return the collection frequency
+	 */
+	public long collectionFrequency(int term) {
+		return collectionFrequencies[term];
+	}
+
+	/**
+	 * Returns the autocompleter of this snapshot, precomputing it on first use.
+	 *
+	 * @return the autocompleter
+	 */
+	public synchronized Autocompleter getAutocompleter() {
+		if (autocompleter == null) {
+			autocompleter = new Autocompleter(this);
+		}
+		return autocompleter;
+	}
+
+	/**
+	 * Returns the sorted location ids of the word with the given id. The returned
+	 * array must not be modified.
+	 *
+	 * @param term the word id
+	 * @return the location ids
+	 */
+	public int[] postings(int term) {
+		return postings[term];
+	}
+
+	/**
+	 * Returns how often the word with the given id appears in each of its
+	 * locations, parallel to {@link #postings(int)}. The returned array must not
+	 * be modified.
+	 *
+	 * @param term the word id
+	 * @return the word counts
+	 */
+	public int[] frequencies(int term) {
+		return frequencies[term];
+	}
+
+	/**
+	 * Returns the highest score each word reaches in any of its locations under a
+	 * scoring model, which bounds how much the word can add to the score of any
+	 * location. The bounds are computed once per model name and kept with the
+	 * snapshot. The returned array must not be modified.
+	 *
+	 * @param model the scoring model
+	 * @return the upper bounds, by word id
+	 */
+	public synchronized double[] maxScores(ScoringModel model) {
+		double[] bounds = maxScores.get(ScoringModel.nameOf(model));
+		if (bounds == null) {
+			bounds = new double[postings.length];
+			for (int term = 0; term < postings.length; term++) {
+				double weight = model.weight(this, term);
+				for (int i = 0; i < postings[term].length; i++) {
+					bounds[term] = Math.max(bounds[term], model.score(this, weight, frequencies[term][i], postings[term][i]));
+				}
+			}
+			maxScores.put(ScoringModel.nameOf(model), bounds);
+		}
+		return bounds;
+	}
+
+	/**
+	 * Returns the sorted positions of the word with the given id in its posting at
+	 * the given index. The returned array must not be modified.
+	 *
+	 * @param term    the word id
+	 * @param posting the index into {@link #postings(int)}
+	 * @return the positions
+	 */
+	public int[] positions(int term, int posting) {
+		return positions[term][posting];
+	}
+
+	/**
+	 * Returns the ids of the words matching each query word, either the word
+	 * itself or every word starting with it. A word matched by several query words
+	 * is listed once per query word.
+	 *
+	 * @param query the cleaned and stemmed query words
+	 * @param exact whether to match whole words instead of prefixes
+	 * @return the word ids
+	 */
+	public int[] matchingTerms(Collection<String> query, boolean exact) {
+		int[] terms = new int[query.size()];
+		int size = 0;
+		for (String word : query) {
+			int low;
+			int high;
+			if (exact) {
+				low = termId(word);
+				high = low + 1;
+				if (low < 0) {
+					continue;
+				}
+			} else {
+				int[] range = prefixRange(word);
+				low = range[0];
+				high = range[1];
+			}
+			if (size + high - low > terms.length) {
+				terms = Arrays.copyOf(terms, Math.max(terms.length * 2, size + high - low));
+			}
+			for (int term = low; term < high; term++) {
+				terms[size++] = term;
+			}
+		}
+		return Arrays.copyOf(terms, size);
+	}
+
+	/**
+	 * Ranks the locations matching the query with a scoring model, keeping only the
+	 * best k results. Bounded searches with a scoring model over long posting
+	 * lists skip the locations that cannot make it into the best k with
+	 * {@link WandSearch}, so their total hits only count the locations that were
+	 * scored.
+	 *
+	 * @param query the cleaned and stemmed query words
+	 * @param exact whether to match whole words instead of prefixes
+	 * @param model the scoring model, or null to score by ratio of matches
+	 * @param k     the number of results to keep, or a non-positive number to keep
+	 *              every result
+	 * @return the best results and the total number of matches
+	 */
+	public TopResults search(Collection<String> query, boolean exact, ScoringModel model, int k) {
+		return search(query, exact, model, k, null, null);
+	}
+
+	/**
+	 * Ranks the locations matching the query with a scoring model, keeping only the
+	 * best k results and stopping early once the budget is exceeded.
+	 *
+	 * @param query  the cleaned and stemmed query words
+	 * @param exact  whether to match whole words instead of prefixes
+	 * @param model  the scoring model, or null to score by ratio of matches
+	 * @param k      the number of results to keep, or a non-positive number to
+	 *               keep every result
+	 * @param budget the budget, or null to visit every match
+	 * @return the best results and the total number of matches
+	 */
+	public TopResults search(Collection<String> query, boolean exact, ScoringModel model, int k, SearchBudget budget) {
+		return search(query, exact, model, k, budget, null);
+	}
+
+	/**
+	 * Ranks the locations matching the query and the location filter, keeping only
+	 * the best k results and stopping early once the budget is exceeded. Only the
+	 * postings of locations within the range of location ids the filter spans are
+	 * visited, so narrow filters make searches cheaper. Bounded searches with a
+	 * scoring model, no budget and no filter may go through {@link WandSearch}.
+	 *
+	 * @param query  the cleaned and stemmed query words
+	 * @param exact  whether to match whole words instead of prefixes
+	 * @param model  the scoring model, or null to score by ratio of matches
+	 * @param k      the number of results to keep, or a non-positive number to
+	 *               keep every result
+	 * @param budget the budget, or null to visit every match
+	 * @param filter the location filter, or null to search every location
+	 * @return the best results and the total number of matches
+	 */
+	public TopResults search(Collection<String> query, boolean exact, ScoringModel model, int k, SearchBudget budget,
+			LocationFilter filter) {
+		BitSet scope = filter == null ? null : filter.resolve(this);
+		if (model == null) {
+			return ratioSearch(query, exact, k, null, budget, scope);
+		}
+		return searchTerms(matchingTerms(query, exact), model, k, null, budget, scope);
+	}
+
+	/**
+	 * Checks whether a search with a scoring model is better served by
+	 * {@link WandSearch}, which only pays off for a bounded number of results over
+	 * posting lists long enough to skip through, and cannot stop early or skip to
+	 * the locations in scope.
+	 *
+	 * @param model  the scoring model, or null
+	 * @param k      the number of results to keep
+	 * @param budget the budget, or null
+	 * @param scope  the ids of the locations to search, or null
+	 * @param terms  the number of words
+	 * @param cost   the number of postings of the words
+	 * @return true if the search should use WAND
+	 */
+	private static boolean prunable(ScoringModel model, int k, SearchBudget budget, BitSet scope, int terms,
+			long cost) {
+		return model != null && k > 0 && budget == null && scope == null && cost >= (long) terms * WAND_LENGTH;
+	}
+
+	/**
+	 * Ranks the locations containing any of the words, keeping only the best k
+	 * results. The score of a location adds up over every listed word it contains.
+	 * Searches visiting more than {@link #PARALLEL_THRESHOLD} postings are split
+	 * into ranges of location ids searched in parallel.
+	 *
+	 * @param terms the word ids
+	 * @param model the scoring model, or null to score by ratio of matches
+	 * @param k     the number of results to keep, or a non-positive number to keep
+	 *              every result
+	 * @return the best results and the total number of matches
+	 */
+	public TopResults searchTerms(int[] terms, ScoringModel model, int k) {
+		return searchTerms(terms, model, k, null);
+	}
+
+	/**
+	 * Ranks the locations containing any of the words, keeping only the best k
+	 * results and stopping early once the budget is exceeded.
+	 *
+	 * @param terms  the word ids
+	 * @param model  the scoring model, or null to score by ratio of matches
+	 * @param k      the number of results to keep, or a non-positive number to
+	 *               keep every result
+	 * @param budget the budget, or null to visit every match
+	 * @return the best results and the total number of matches
+	 */
+	public TopResults searchTerms(int[] terms, ScoringModel model, int k, SearchBudget budget) {
+		return searchTerms(terms, model, k, null, budget, null);
+	}
+
+	/**
+	 * Ranks the locations containing any of the words, keeping only the best k
+	 * results that sort after a given result.
+	 *
+	 * @param terms  the word ids
+	 * @param model  the scoring model, or null to score by ratio of matches
+	 * @param k      the number of results to keep
+	 * @param after  the result to keep results after, or null
+	 * @param budget the budget, or null to visit every match
+	 * @param scope  the ids of the locations to search, or null for every location
+	 * @return the best results and the total number of matches
+	 */
+	private TopResults searchTerms(int[] terms, ScoringModel model, int k, SearchResult after, SearchBudget budget,
+			BitSet scope) {
+		long cost = 0;
+		for (int term : terms) {
+			cost += postings[term].length;
+		}
+		if (prunable(model, k, budget, scope, terms.length, cost)) {
+			return new WandSearch(this, model).search(terms, k, after);
+		}
+		int low = scope == null ? 0 : Math.max(0, scope.nextSetBit(0));
+		int high = scope == null ? locations.length : scope.length();
+		double[] weights = new double[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			weights[i] = model == null ? 0 : model.weight(this, terms[i]);
+		}
+
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		if (cost < PARALLEL_THRESHOLD || parallelism < 2 || high - low < 2) {
+			return searchRange(terms, weights, model, k, after, low, high, budget, scope);
+		}
+		int ranges = (int) Math.min(parallelism * 4L, Math.min(high - low, cost / (PARALLEL_THRESHOLD / 4)));
+		int size = (high - low + ranges - 1) / ranges;
+		return ForkJoinPool.commonPool()
+				.invoke(new RangeSearch(terms, weights, model, k, after, low, high, size, budget, scope));
+	}
+
+	/**
+	 * Ranks the locations in a range of location ids containing any of the words,
+	 * accumulating into a pooled {@link ScoreAccumulator}.
+	 *
+	 * @param terms   the word ids
+	 * @param weights the weight of each word
+	 * @param model   the scoring model, or null to score by ratio of matches
+	 * @param k       the number of results to keep
+	 * @param after   the result to keep results after, or null
+	 * @param low     the first location id
+	 * @param high    one past the last location id
+	 * @param budget  the budget, or null to visit every match
+	 * @param scope   the ids of the locations to search, or null for every
+	 *                location in the range
+	 * @return the best results in the range and the number of matches in it
+	 */
+	private TopResults searchRange(int[] terms, double[] weights, ScoringModel model, int k, SearchResult after,
+			int low, int high, SearchBudget budget, BitSet scope) {
+		ScoreAccumulator accumulator = ScoreAccumulator.acquire(locations.length);
+		boolean stopped = false;
+
+		for (int t = 0; t < terms.length && !stopped; t++) {
+			if (budget != null && budget.isExceeded()) {
+				stopped = true;
+				break;
+			}
+			int[] documents = postings[terms[t]];
+			int[] counted = frequencies[terms[t]];
+			int i = low == 0 ? 0 : PhraseQuery.advance(documents, 0, low);
+			while (i < documents.length && documents[i] < high) {
+				// check the budget every so often within long posting lists
+				int first = i;
+				int limit = budget == null ? documents.length : Math.min(documents.length, i + BUDGET_INTERVAL);
+				for (; i < limit && documents[i] < high; i++) {
+					int document = documents[i];
+					if (scope != null && !scope.get(document)) {
+						continue;
+					}
+					if (model == null) {
+						accumulator.add(document, counted[i]);
+					} else {
+						accumulator.add(document, counted[i], model.score(this, weights[t], counted[i], document));
+					}
+				}
+				if (budget != null) {
+					budget.charge(i - first);
+					if (budget.isExceeded()) {
+						stopped = i < documents.length && documents[i] < high;
+						break;
+					}
+				}
+			}
+		}
+
+		return collect(accumulator, model != null, new TopKCollector(k, after), stopped);
+	}
+
+	/**
+	 * Ranks the locations matching the query by the ratio of matches to total
+	 * words, keeping only the best k results. Prefixes are resolved through
+	 * {@link #prefixPostings(String)}, so stored merged postings are used when
+	 * there are any.
+	 *
+	 * @param query the cleaned and stemmed query words
+	 * @param exact whether to match whole words instead of prefixes
+	 * @param k     the number of results to keep, or a non-positive number to keep
+	 *              every result
+	 * @return the best results and the total number of matches
+	 */
+	public TopResults ratioSearch(Collection<String> query, boolean exact, int k) {
+		return ratioSearch(query, exact, k, null);
+	}
+
+	/**
+	 * Ranks the locations matching the query by the ratio of matches to total
+	 * words, keeping only the best k results and stopping early once the budget is
+	 * exceeded. Under a budget, prefixes without stored merged postings are
+	 * visited one word at a time so that the search can stop between words.
+	 *
+	 * @param query  the cleaned and stemmed query words
+	 * @param exact  whether to match whole words instead of prefixes
+	 * @param k      the number of results to keep, or a non-positive number to
+	 *               keep every result
+	 * @param budget the budget, or null to visit every match
+	 * @return the best results and the total number of matches
+	 */
+	public TopResults ratioSearch(Collection<String> query, boolean exact, int k, SearchBudget budget) {
+		return ratioSearch(query, exact, k, null, budget, null);
+	}
+
+	/**
+	 * Ranks the locations matching the query by the ratio of matches to total
+	 * words, keeping only the best k results that sort after a given result.
+	 * Searches visiting more than {@link #PARALLEL_THRESHOLD} postings are split
+	 * into ranges of location ids searched in parallel, like searches with a
+	 * scoring model; smaller ones are accumulated on the calling thread.
+	 *
+	 * @param query  the cleaned and stemmed query words
+	 * @param exact  whether to match whole words instead of prefixes
+	 * @param k      the number of results to keep
+	 * @param after  the result to keep results after, or null
+	 * @param budget the budget, or null to visit every match
+	 * @param scope  the ids of the locations to search, or null for every location
+	 * @return the best results and the total number of matches
+	 */
+	private TopResults ratioSearch(Collection<String> query, boolean exact, int k, SearchResult after,
+			SearchBudget budget, BitSet scope) {
+		if (ForkJoinPool.getCommonPoolParallelism() > 1) {
+			int[] terms = matchingTerms(query, exact);
+			long cost = 0;
+			for (int term : terms) {
+				cost += postings[term].length;
+			}
+			if (cost >= PARALLEL_THRESHOLD) {
+				return searchTerms(terms, null, k, after, budget, scope);
+			}
+		}
+		ScoreAccumulator accumulator = ScoreAccumulator.acquire(locations.length);
+		boolean stopped = accumulate(query, exact, accumulator, budget, scope);
+		return collect(accumulator, false, new TopKCollector(k, after), stopped);
+	}
+
+	/**
+	 * Returns one page of the results matching the query, from best to worst. The
+	 * first page is requested without a cursor, and every page but the last
+	 * returns the cursor of the next page. Each page is computed with a heap
+	 * bounded by the page size that only admits results after the cursor, so no
+	 * result list is kept between pages.
+	 *
+	 * @param query  the cleaned and stemmed query words
+	 * @param exact  whether to match whole words instead of prefixes
+	 * @param model  the scoring model, or null to score by ratio of matches
+	 * @param size   the number of results per page
+	 * @param cursor the cursor returned with the previous page, or null for the
+	 *               first page
+	 * @return the page
+	 * @throws IllegalArgumentException if the size is not positive or the cursor
+	 *                                  is invalid
+	 */
+	public ResultPage page(Collection<String> query, boolean exact, ScoringModel model, int size, String cursor) {
+		return page(query, exact, model, size, cursor, null);
+	}
+
+	/**
+	 * Returns one page of the results matching the query and the location filter.
+	 *
+	 * @param query  the cleaned and stemmed query words
+	 * @param exact  whether to match whole words instead of prefixes
+	 * @param model  the scoring model, or null to score by ratio of matches
+	 * @param size   the number of results per page
+	 * @param cursor the cursor returned with the previous page, or null for the
+	 *               first page
+	 * @param filter the location filter, or null to search every location
+	 * @return the page
+	 * @throws IllegalArgumentException if the size is not positive or the cursor
+	 *                                  is invalid
+	 * @see #page(Collection, boolean, ScoringModel, int, String)
+	 */
+	public ResultPage page(Collection<String> query, boolean exact, ScoringModel model, int size, String cursor,
+			LocationFilter filter) {
+		return page(query, exact, model, size, cursor, filter, null);
+	}
+
+	/**
+	 * Returns one page of the results matching the query and the location filter,
+	 * stopping early once the budget is exceeded. A page that stopped early is
+	 * flagged as partial, and is the best of the matches found before stopping.
+	 *
+	 * @param query  the cleaned and stemmed query words
+	 * @param exact  whether to match whole words instead of prefixes
+	 * @param model  the scoring model, or null to score by ratio of matches
+	 * @param size   the number of results per page
+	 * @param cursor the cursor returned with the previous page, or null for the
+	 *               first page
+	 * @param filter the location filter, or null to search every location
+	 * @param budget the budget, or null to visit every match
+	 * @return the page
+	 * @throws IllegalArgumentException if the size is not positive or the cursor
+	 *                                  is invalid
+	 */
+	public ResultPage page(Collection<String> query, boolean exact, ScoringModel model, int size, String cursor,
+			LocationFilter filter, SearchBudget budget) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Invalid page size: " + size);
+		}
+		SearchResult after = ResultPage.decode(cursor);
+		BitSet scope = filter == null ? null : filter.resolve(this);
+		TopResults top;
+		if (model == null) {
+			top = ratioSearch(query, exact, size + 1, after, budget, scope);
+		} else {
+			top = searchTerms(matchingTerms(query, exact), model, size + 1, after, budget, scope);
+		}
+		return new ResultPage(top, size);
+	}
+
+	/**
+	 * Tests whether the merged postings of a prefix are stored by the prefix
+	 * accelerator.
+	 *
+	 * @param prefix the prefix
+	 * @return true if the postings are stored
+	 */
+	private boolean stored(String prefix) {
+		PrefixAccelerator accelerator = getAccelerator();
+		return accelerator != null && accelerator.get(prefix) != null;
+	}
+
+	/**
+	 * Adds the matches of the query words to an accumulator, stopping early once
+	 * the budget is exceeded. Under a scope, prefixes are visited one word at a
+	 * time so that each posting list can skip to the locations in scope.
+	 *
+	 * @param query       the cleaned and stemmed query words
+	 * @param exact       whether to match whole words instead of prefixes
+	 * @param accumulator the accumulator
+	 * @param budget      the budget, or null to visit every match
+	 * @param scope       the ids of the locations to search, or null for every
+	 *                    location
+	 * @return true if the budget was exceeded, so matches may be missing
+	 */
+	private boolean accumulate(Collection<String> query, boolean exact, ScoreAccumulator accumulator,
+			SearchBudget budget, BitSet scope) {
+		boolean stopped = false;
+		int low = scope == null ? 0 : Math.max(0, scope.nextSetBit(0));
+		int high = scope == null ? locations.length : scope.length();
+
+		for (String word : query) {
+			if (exact) {
+				int term = termId(word);
+				if (term >= 0) {
+					stopped = addTerm(accumulator, term, budget, scope, low, high);
+				}
+			} else if (scope == null && (budget == null || stored(word))) {
+				if (budget != null && budget.isExceeded()) {
+					stopped = true;
+					break;
+				}
+				PrefixPostings merged = prefixPostings(word);
+				for (int i = 0; i < merged.size(); i++) {
+					accumulator.add(merged.document(i), merged.count(i));
+				}
+				if (budget != null) {
+					budget.charge(merged.size());
+					stopped = budget.isExceeded();
+				}
+			} else {
+				int[] range = prefixRange(word);
+				for (int term = range[0]; term < range[1] && !stopped; term++) {
+					stopped = addTerm(accumulator, term, budget, scope, low, high);
+				}
+			}
+			if (stopped) {
+				break;
+			}
+		}
+		return stopped;
+	}
+
+	/**
+	 * Adds the matches of a word to an accumulator unless the budget is already
+	 * exceeded, stopping partway through once it is.
+	 *
+	 * @param accumulator the accumulator
+	 * @param term        the word id
+	 * @param budget      the budget, or null
+	 * @param scope       the ids of the locations to search, or null for every
+	 *                    location in the range
+	 * @param low         the first location id to search
+	 * @param high        one past the last location id to search
+	 * @return true if the budget was exceeded and matches of the word were skipped
+	 */
+	private boolean addTerm(ScoreAccumulator accumulator, int term, SearchBudget budget, BitSet scope, int low,
+			int high) {
+		if (budget != null && budget.isExceeded()) {
+			return true;
+		}
+		int[] documents = postings[term];
+		int[] counted = frequencies[term];
+		int i = low == 0 ? 0 : PhraseQuery.advance(documents, 0, low);
+		while (i < documents.length && documents[i] < high) {
+			// check the budget every so often within long posting lists
+			int first = i;
+			int limit = budget == null ? documents.length : Math.min(documents.length, i + BUDGET_INTERVAL);
+			for (; i < limit && documents[i] < high; i++) {
+				if (scope == null || scope.get(documents[i])) {
+					accumulator.add(documents[i], counted[i]);
+				}
+			}
+			if (budget != null) {
+				budget.charge(i - first);
+				if (budget.isExceeded()) {
+					return i < documents.length && documents[i] < high;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Turns the touched locations of an accumulator into the best k results,
+	 * creating a {@link SearchResult} only for locations among the best so far,
+	 * then releases the accumulator to the pool.
+	 *
+	 * @param accumulator the accumulator
+	 * @param scored      whether to use the accumulated scores instead of the
+	 *                    ratio of matches
+	 * @param collector   the collector of the best results
+	 * @param partial     whether the search stopped early
+	 * @return the best results and the total number of matches
+	 */
+	private TopResults collect(ScoreAccumulator accumulator, boolean scored, TopKCollector collector,
+			boolean partial) {
+		for (int i = 0; i < accumulator.size(); i++) {
+			int document = accumulator.document(i);
+			int count = accumulator.count(document);
+			if (scored) {
+				collector.offer(locations[document], count, lengths[document], accumulator.score(document));
+			} else {
+				collector.offer(locations[document], count, lengths[document]);
+			}
+		}
+		ScoreAccumulator.release(accumulator);
+		return new TopResults(collector.getResults(), collector.getTotalHits(), partial);
+	}
+
+	/**
+	 * The Class RangeSearch splits a search into halves of the range of location
+	 * ids until the ranges are small enough to search directly, then keeps the
+	 * best results of both halves.
+	 */
+	private class RangeSearch extends RecursiveTask<TopResults> {
+
+		/** The serial version. */
+		private static final long serialVersionUID = 1L;
+
+		/** The word ids. */
+		private final int[] terms;
+
+		/** The weight of each word. */
+		private final double[] weights;
+
+		/** The scoring model, or null. */
+		private final ScoringModel model;
+
+		/** The number of results to keep. */
+		private final int k;
+
+		/** The result to keep results after, or null. */
+		private final SearchResult after;
+
+		/** The first location id. */
+		private final int low;
+
+		/** One past the last location id. */
+		private final int high;
+
+		/** The largest range searched directly. */
+		private final int size;
+
+		/** The budget, or null. */
+		private final SearchBudget budget;
+
+		/** The ids of the locations to search, or null. */
+		private final BitSet scope;
+
+		/**
+		 * Instantiates a new range search.
+		 *
+		 * @param terms   the word ids
+		 * @param weights the weight of each word
+		 * @param model   the scoring model, or null
+		 * @param k       the number of results to keep
+		 * @param after   the result to keep results after, or null
+		 * @param low     the first location id
+		 * @param high    one past the last location id
+		 * @param size    the largest range searched directly
+		 * @param budget  the budget, or null
+		 * @param scope   the ids of the locations to search, or null
+		 */
+		public RangeSearch(int[] terms, double[] weights, ScoringModel model, int k, SearchResult after, int low,
+				int high, int size, SearchBudget budget, BitSet scope) {
+			this.terms = terms;
+			this.weights = weights;
+			this.model = model;
+			this.k = k;
+			this.after = after;
+			this.low = low;
+			this.high = high;
+			this.size = size;
+			this.budget = budget;
+			this.scope = scope;
+		}
+
+		@Override
+		protected TopResults compute() {
+			if (high - low <= size) {
+				return searchRange(terms, weights, model, k, after, low, high, budget, scope);
+			}
+			int middle = (low + high) >>> 1;
+			RangeSearch left = new RangeSearch(terms, weights, model, k, after, low, middle, size, budget, scope);
+			left.fork();
+			TopResults right = new RangeSearch(terms, weights, model, k, after, middle, high, size, budget, scope).compute();
+			TopResults first = left.join();
+
+			TopKCollector collector = new TopKCollector(k);
+			for (SearchResult result : first.getResults()) {
+				collector.offer(result);
+			}
+			for (SearchResult result : right.getResults()) {
+				collector.offer(result);
+			}
+			return new TopResults(collector.getResults(), first.getTotalHits() + right.getTotalHits(),
+					first.isPartial() || right.isPartial());
+		}
+	}
+}
@@ -1,8 +1,5 @@
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -20,12 +17,123 @@ public class InvertedIndex {
 	/** The word counts and their locations */
 	private final TreeMap<String, Integer> wordCounts;
 
+	/** The number of modifications made to the index */
+	private long generation;
+
+	/** The most recent snapshot of the index */
+	private IndexSnapshot snapshot;
+
+	/** The memory budget for stored prefix postings in bytes, or 0 for none */
+	private long prefixBudget;
+
+	/** The number of times each prefix was searched, or null */
+	private Map<String, Integer> prefixLog;
+
+	/** The offsets of the words of each location, if recorded */
+	private final TreeMap<String, WordOffsets> offsets;
+
+	/** Whether builders should record word offsets */
+	private boolean recordOffsets;
+
 	/**
 	 * Initializes this InvertedIndex.
 	 */
 	public InvertedIndex() {
 		wordCounts = new TreeMap<>();
 		index = new TreeMap<>();
+		generation = 0;
+		snapshot = null;
+		prefixBudget = 0;
+		prefixLog = null;
+		offsets = new TreeMap<>();
+		recordOffsets = false;
+	}
+
+	/**
+	 * Sets whether builders should record the byte offsets of every word added,
+	 * which are needed to generate snippets. See {@link SnippetGenerator}.
+	 *
+	 * @param record whether to record word offsets
+	 */
+	public void setRecordOffsets(boolean record) {
+		recordOffsets = record;
+	}
+
+	/**
+	 * Checks whether builders should record word offsets.
+	 *
+	 * @return true if word offsets are recorded
+	 */
+	public boolean isRecordingOffsets() {
+		return recordOffsets;
+	}
+
+	/**
+	 * Adds the offsets of the words of a location.
+	 *
+	 * @param location the location
+	 * @param words    the offsets of its words by position
+	 */
+	public void addOffsets(String location, WordOffsets words) {
+		offsets.put(location, words);
+	}
+
+	/**
+	 * Gets the offsets of the words of a location.
+	 *
+	 * @param location the location
+	 * @return the offsets of its words by position, or null if not recorded
+	 */
+	public WordOffsets getOffsets(String location) {
+		return offsets.get(location);
+	}
+
+	/**
+	 * Enables storing the merged postings of expensive short prefixes in every
+	 * snapshot, which speeds up partial searches for them. See
+	 * {@link PrefixAccelerator}.
+	 *
+	 * @param budget   the memory budget in bytes, or 0 to disable
+	 * @param queryLog the number of times each prefix was searched, or null to
+	 *                 choose prefixes by postings alone
+	 */
+	public void setPrefixAccelerator(long budget, Map<String, Integer> queryLog) {
+		prefixBudget = budget;
+		prefixLog = queryLog;
+		snapshot = null;
+	}
+
+	/**
+	 * Returns the generation of the index, which changes every time words are
+	 * added. Results computed against an older generation may be stale.
+	 *
+	 * @return the generation of the index
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns an immutable snapshot of the index with precomputed collection
+	 * statistics. The snapshot is only rebuilt after the index has changed.
+	 *
+	 * @return the snapshot of the current generation
+	 */
+	public IndexSnapshot snapshot() {
+		if (snapshot == null || snapshot.getGeneration() != generation) {
+			snapshot = new IndexSnapshot(index, wordCounts, generation, prefixBudget, prefixLog);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns the snapshot of the current generation if one has already been
+	 * taken, without taking a new one.
+	 *
+	 * @return the snapshot of the current generation, or null
+	 */
+	public IndexSnapshot currentSnapshot() {
+		return snapshot != null && snapshot.getGeneration() == generation ? snapshot : null;
 	}
 
 	/**
@@ -48,6 +156,20 @@ public class InvertedIndex {
 		}
 	}
 
+	/**
+	 * Returns the most frequent words completing the last word typed, ranked by
+	 * the number of times they were found.
+	 *
+	 * @param typed the text typed so far
+	 * @param n     the number of completions
+	 * @return the completions, most frequent first
+	 */
+	public List<String> autocomplete(String typed, int n) {
+		String[] words = TextParser.parse(typed);
+		String prefix = words.length == 0 ? "" : words[words.length - 1];
+		return snapshot().getAutocompleter().complete(prefix, n);
+	}
+
 	/**
 	 * Tests whether the index contains the specified word.
 	 *
@@ -134,77 +256,218 @@ public class InvertedIndex {
 		}
 		wordCounts.merge(location, 1, Integer::sum);
 		positions.add(position++);
+		generation++;
 	}
 
 	/**
-	 * Search helper method.
+	 * Exact search.
 	 *
-	 * @param word       the word
-	 * @param searchMap  the search map
-	 * @param resultList the result list
+	 * @param query the cleaned treeset of queries
+	 * @return the list
 	 */
-	private void searchHelper(String word, Map<String, SearchResult> searchMap, List<SearchResult> resultList) {
-
-		for (String location : index.get(word).keySet()) {
-			int count = index.get(word).get(location).size();
-			int total = wordCounts.get(location);
+	public List<SearchResult> exactSearch(TreeSet<String> query) {
+		return snapshot().ratioSearch(query, true, 0).getResults();
+	}
 
-			if (searchMap.containsKey(location)) {
-				searchMap.get(location).updateMatches(count);
+	/**
+	 * Exact search keeping only the best k results.
+	 *
+	 * @param query the cleaned treeset of queries
+	 * @param k     the number of results to keep
+	 * @return the best k results and the total number of matches
+	 */
+	public TopResults exactSearch(TreeSet<String> query, int k) {
+		return snapshot().ratioSearch(query, true, k);
+	}
 
-			} else {
-				SearchResult searchResult = new SearchResult(location, count, total);
-				searchMap.putIfAbsent(location, searchResult);
-				resultList.add(searchResult);
-			}
-		}
+	/**
+	 * Exact search keeping only the best k results, stopping early once the budget
+	 * is exceeded.
+	 *
+	 * @param query  the cleaned treeset of queries
+	 * @param k      the number of results to keep
+	 * @param budget the budget, or null to visit every match
+	 * @return the best k results found, flagged as partial if the search stopped
+	 *         early
+	 */
+	public TopResults exactSearch(TreeSet<String> query, int k, SearchBudget budget) {
+		return snapshot().ratioSearch(query, true, k, budget);
 	}
 
 	/**
-	 * Exact search.
+	 * Partial search.
 	 *
-	 * @param query the cleaned treeset of queries
+	 * @param query the cleaned TreeSet of queries
 	 * @return the list
 	 */
-	public List<SearchResult> exactSearch(TreeSet<String> query) {
+	public List<SearchResult> partialSearch(TreeSet<String> query) {
+		return snapshot().ratioSearch(query, false, 0).getResults();
+	}
+
+	/**
+	 * Partial search keeping only the best k results.
+	 *
+	 * @param query the cleaned TreeSet of queries
+	 * @param k     the number of results to keep
+	 * @return the best k results and the total number of matches
+	 */
+	public TopResults partialSearch(TreeSet<String> query, int k) {
+		return snapshot().ratioSearch(query, false, k);
+	}
 
-		HashMap<String, SearchResult> searchMap = new HashMap<>();
+	/**
+	 * Partial search keeping only the best k results, stopping early once the
+	 * budget is exceeded.
+	 *
+	 * @param query  the cleaned TreeSet of queries
+	 * @param k      the number of results to keep
+	 * @param budget the budget, or null to visit every match
+	 * @return the best k results found, flagged as partial if the search stopped
+	 *         early
+	 */
+	public TopResults partialSearch(TreeSet<String> query, int k, SearchBudget budget) {
+		return snapshot().ratioSearch(query, false, k, budget);
+	}
 
-		List<SearchResult> resultList = new ArrayList<>();
+	/**
+	 * Searches the index, ranking the results with the scoring model if one is
+	 * given or by the ratio of matches to total words otherwise.
+	 *
+	 * @param query the cleaned TreeSet of queries
+	 * @param exact the exact boolean for searching
+	 * @param model the scoring model, or null
+	 * @return the sorted list
+	 */
+	public List<SearchResult> search(TreeSet<String> query, boolean exact, ScoringModel model) {
+		if (model != null) {
+			return snapshot().search(query, exact, model, 0).getResults();
+		} else if (exact) {
+			return exactSearch(query);
+		} else {
+			return partialSearch(query);
+		}
+	}
 
-		for (String word : query) {
-			if (index.containsKey(word)) {
-				searchHelper(word, searchMap, resultList);
-			}
+	/**
+	 * Searches the index keeping only the best k results, stopping early once the
+	 * budget is exceeded.
+	 *
+	 * @param query  the cleaned TreeSet of queries
+	 * @param exact  the exact boolean for searching
+	 * @param model  the scoring model, or null
+	 * @param k      the number of results to keep, or a non-positive number to
+	 *               keep every result
+	 * @param budget the budget, or null to visit every match
+	 * @return the best k results found, flagged as partial if the search stopped
+	 *         early
+	 */
+	public TopResults search(TreeSet<String> query, boolean exact, ScoringModel model, int k, SearchBudget budget) {
+		if (model != null) {
+			return snapshot().search(query, exact, model, k, budget);
+		} else if (exact) {
+			return exactSearch(query, k, budget);
+		} else {
+			return partialSearch(query, k, budget);
 		}
+	}
 
-		Collections.sort(resultList);
-		return resultList;
+	/**
+	 * Searches the locations kept by a location filter, keeping only the best k
+	 * results and stopping early once the budget is exceeded.
+	 *
+	 * @param query  the cleaned TreeSet of queries
+	 * @param exact  the exact boolean for searching
+	 * @param model  the scoring model, or null
+	 * @param k      the number of results to keep, or a non-positive number to
+	 *               keep every result
+	 * @param budget the budget, or null to visit every match
+	 * @param filter the location filter, or null to search every location
+	 * @return the best k results found
+	 */
+	public TopResults search(TreeSet<String> query, boolean exact, ScoringModel model, int k, SearchBudget budget,
+			LocationFilter filter) {
+		return snapshot().search(query, exact, model, k, budget, filter);
 	}
 
 	/**
-	 * Partial search.
+	 * Returns one page of the results matching the query.
 	 *
-	 * @param query the cleaned TreeSet of queries
-	 * @return the list
+	 * @param query  the cleaned TreeSet of queries
+	 * @param exact  the exact boolean for searching
+	 * @param model  the scoring model, or null
+	 * @param size   the number of results per page
+	 * @param cursor the cursor returned with the previous page, or null for the
+	 *               first page
+	 * @return the page
+	 * @see IndexSnapshot#page(java.util.Collection, boolean, ScoringModel, int,
+	 *      String)
 	 */
-	public List<SearchResult> partialSearch(TreeSet<String> query) {
-		HashMap<String, SearchResult> searchMap = new HashMap<>();
-		List<SearchResult> resultList = new ArrayList<>();
-
-		for (String words : query) {
-			for (String word : index.tailMap(words).keySet()) {
-				if (word.startsWith(words)) {
-					searchHelper(word, searchMap, resultList);
-				} else {
-					break;
-				}
-			}
-		}
+	public ResultPage searchPage(TreeSet<String> query, boolean exact, ScoringModel model, int size, String cursor) {
+		return snapshot().page(query, exact, model, size, cursor);
+	}
 
-		Collections.sort(resultList);
-		return resultList;
+	/**
+	 * Returns one page of the results matching the query among the locations
+	 * kept by a location filter.
+	 *
+	 * @param query  the cleaned TreeSet of queries
+	 * @param exact  the exact boolean for searching
+	 * @param model  the scoring model, or null
+	 * @param size   the number of results per page
+	 * @param cursor the cursor returned with the previous page, or null for the
+	 *               first page
+	 * @param filter the location filter, or null to search every location
+	 * @return the page
+	 */
+	public ResultPage searchPage(TreeSet<String> query, boolean exact, ScoringModel model, int size, String cursor,
+			LocationFilter filter) {
+		return snapshot().page(query, exact, model, size, cursor, filter);
+	}
 
+	/**
+	 * Returns one page of the results matching the query among the locations
+	 * kept by a location filter, stopping early once the budget is exceeded.
+	 *
+	 * @param query  the cleaned TreeSet of queries
+	 * @param exact  the exact boolean for searching
+	 * @param model  the scoring model, or null
+	 * @param size   the number of results per page
+	 * @param cursor the cursor returned with the previous page, or null for the
+	 *               first page
+	 * @param filter the location filter, or null to search every location
+	 * @param budget the budget, or null to visit every match
+	 * @return the page, flagged as partial if the search stopped early
+	 */
+	public ResultPage searchPage(TreeSet<String> query, boolean exact, ScoringModel model, int size, String cursor,
+			LocationFilter filter, SearchBudget budget) {
+		return snapshot().page(query, exact, model, size, cursor, filter, budget);
+	}
+
+	/**
+	 * Searches the index with a structured query, such as a phrase or boolean
+	 * query.
+	 *
+	 * @param query the query
+	 * @param exact the exact boolean for searching
+	 * @param model the scoring model, or null
+	 * @return the sorted list
+	 */
+	public List<SearchResult> search(Query query, boolean exact, ScoringModel model) {
+		return query.search(snapshot(), exact, model, 0).getResults();
+	}
+
+	/**
+	 * Searches the index with a structured query, stopping early once the budget
+	 * is exceeded.
+	 *
+	 * @param query  the query
+	 * @param exact  the exact boolean for searching
+	 * @param model  the scoring model, or null
+	 * @param budget the budget, or null to visit every match
+	 * @return every result found, flagged as partial if the search stopped early
+	 */
+	public TopResults search(Query query, boolean exact, ScoringModel model, SearchBudget budget) {
+		return query.search(snapshot(), exact, model, 0, budget);
 	}
 
 	/**
@@ -214,7 +477,72 @@ public class InvertedIndex {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public void toJSON(Path path) throws IOException {
-		JSONWriter.asInvertedIndex(index, path);
+		toJSON(path, false);
+	}
+
+	/**
+	 * Writing InvertedIndex to JSON, pretty printed or compact.
+	 *
+	 * @param path    the path
+	 * @param compact whether to write compact output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void toJSON(Path path, boolean compact) throws IOException {
+		JSONWriter.asInvertedIndex(index, path, compact);
+	}
+
+	/**
+	 * Writing InvertedIndex to JSON from a snapshot, formatting ranges of words
+	 * with several threads. The output is the same as {@link #toJSON(Path)}. With
+	 * a single thread, a snapshot is only used if one is already up to date, and
+	 * the index is written directly otherwise.
+	 *
+	 * @param path    the path
+	 * @param threads the number of threads
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void toJSON(Path path, int threads) throws IOException {
+		toJSON(path, threads, false);
+	}
+
+	/**
+	 * Writing InvertedIndex to JSON with several threads, pretty printed or
+	 * compact, as {@link #toJSON(Path, int)} does.
+	 *
+	 * @param path    the path
+	 * @param threads the number of threads
+	 * @param compact whether to write compact output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void toJSON(Path path, int threads, boolean compact) throws IOException {
+		IndexSnapshot current = threads > 1 ? snapshot() : currentSnapshot();
+		if (current == null) {
+			toJSON(path, compact);
+		} else {
+			JSONWriter.asInvertedIndex(current, path, threads, compact);
+		}
+	}
+
+	/**
+	 * Writing InvertedIndex in the given format. Binary formats are written from a
+	 * snapshot.
+	 *
+	 * @param path    the path
+	 * @param format  the format
+	 * @param threads the number of threads writing JSON
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void toFormat(Path path, OutputFormat format, int threads) throws IOException {
+		switch (format) {
+		case COLUMNAR:
+			ColumnarWriter.asInvertedIndex(snapshot(), path);
+			break;
+		case CBOR:
+			CBORWriter.asInvertedIndex(snapshot(), path);
+			break;
+		default:
+			toJSON(path, threads, format == OutputFormat.COMPACT_JSON);
+		}
 	}
 
 	/**
@@ -224,7 +552,39 @@ public class InvertedIndex {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public void locJSON(Path path) throws IOException {
-		JSONWriter.asObject(wordCounts, path);
+		locJSON(path, false);
+	}
+
+	/**
+	 * Writing locations to JSON, pretty printed or compact.
+	 *
+	 * @param path    the path
+	 * @param compact whether to write compact output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void locJSON(Path path, boolean compact) throws IOException {
+		JSONWriter.asObject(wordCounts, path, compact);
+	}
+
+	/**
+	 * Writing locations in the given format. Binary formats are written from a
+	 * snapshot.
+	 *
+	 * @param path   the path
+	 * @param format the format
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void locFormat(Path path, OutputFormat format) throws IOException {
+		switch (format) {
+		case COLUMNAR:
+			ColumnarWriter.asLocations(snapshot(), path);
+			break;
+		case CBOR:
+			CBORWriter.asLocations(snapshot(), path);
+			break;
+		default:
+			locJSON(path, format == OutputFormat.COMPACT_JSON);
+		}
 	}
 
 	/**
@@ -233,6 +593,11 @@ public class InvertedIndex {
 	 * @param currentIndex the current index
 	 */
 	public void addAll(InvertedIndex other) {
+		offsets.putAll(other.offsets);
+		if (other.index.isEmpty() && other.wordCounts.isEmpty()) {
+			return;
+		}
+		generation++;
 		for (String word : other.index.keySet()) {
 			if (!this.index.containsKey(word)) {
 				this.index.put(word, other.index.get(word));
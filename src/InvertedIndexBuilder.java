@@ -4,6 +4,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.regex.Matcher;
 
 import opennlp.tools.stemmer.Stemmer;
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
@@ -53,6 +54,10 @@ public class InvertedIndexBuilder {
 	 * @throws IOException
 	 */
 	public static void addFiles(Path root, InvertedIndex index) throws IOException {
+		if (index.isRecordingOffsets()) {
+			addFilesWithOffsets(root, index);
+			return;
+		}
 		try (BufferedReader reader = Files.newBufferedReader(root, StandardCharsets.UTF_8)) {
 			String line;
 			String fileName = root.toString();
@@ -67,4 +72,40 @@ public class InvertedIndexBuilder {
 		}
 	}
 
+	/**
+	 * Stem the words of a file to the inverted index like
+	 * {@link #addFiles(Path, InvertedIndex)}, also recording the byte offset and
+	 * length of the whitespace separated token each word came from.
+	 * 
+	 * @param root  the pathname of a single file that will be stemmed
+	 * @param index the InvertedIndex which all words encountered will be stemmed
+	 *              per file
+	 * @throws IOException
+	 */
+	private static void addFilesWithOffsets(Path root, InvertedIndex index) throws IOException {
+		try (OffsetLineReader reader = new OffsetLineReader(Files.newInputStream(root))) {
+			String line;
+			String fileName = root.toString();
+			int count = 1;
+			Stemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+			WordOffsets offsets = new WordOffsets();
+			while ((line = reader.readLine()) != null) {
+				// cleaning never joins or splits whitespace separated tokens
+				Matcher token = TextParser.TOKEN_REGEX.matcher(line);
+				long start = reader.getLineStart();
+				int previous = 0;
+				while (token.find()) {
+					start += OffsetLineReader.utf8Length(line, previous, token.start());
+					int length = OffsetLineReader.utf8Length(line, token.start(), token.end());
+					previous = token.start();
+					for (String word : TextParser.parse(token.group())) {
+						index.addWord(stemmer.stem(word).toString(), fileName, count++);
+						offsets.add(start, length);
+					}
+				}
+			}
+			index.addOffsets(fileName, offsets);
+		}
+	}
+
 }
\ No newline at end of file
@@ -1,22 +1,148 @@
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
-import java.util.Iterator;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * The Class JSONWriter writes to files in proper JSON format.
+ * The Class JSONWriter writes to files in proper JSON format. Output is pretty
+ * printed with tabs and line separators, unless the writer was opened for
+ * compact output by {@link #newWriter(Path, boolean)}.
+ * Scores are formatted with six decimals without creating a formatter per
+ * result, and whole records are assembled before being written.
  */
 public class JSONWriter {
 
+	/** The line separator. */
+	private static final String NEWLINE = System.lineSeparator();
+
+	/** The indentation for each level. */
+	private static final String[] TABS = new String[32];
+
+	/** The size of the output buffers. */
+	private static final int BUFFER = 1 << 16;
+
+	/** The number of ranges of words formatted ahead per thread. */
+	private static final int WINDOW = 4;
+
+	/** The format symbols used to write numbers. */
+	private static final DecimalFormatSymbols SYMBOLS = DecimalFormatSymbols
+			.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+
+	/** The formatter of scores the fast path falls back to. */
+	private static final ThreadLocal<DecimalFormat> SCORE = ThreadLocal
+			.withInitial(() -> new DecimalFormat("0.000000", SYMBOLS));
+
+	/** The formatter of counts, when digits are not ASCII. */
+	private static final ThreadLocal<DecimalFormat> COUNT = ThreadLocal
+			.withInitial(() -> new DecimalFormat("0", SYMBOLS));
+
+	static {
+		TABS[0] = "";
+		for (int i = 1; i < TABS.length; i++) {
+			TABS[i] = TABS[i - 1] + "\t";
+		}
+	}
+
+	/**
+	 * A buffered writer whose output is written without whitespace.
+	 */
+	private static class CompactWriter extends BufferedWriter {
+
+		/**
+		 * Instantiates a new compact writer.
+		 *
+		 * @param out  the writer to buffer
+		 * @param size the size of the buffer
+		 */
+		public CompactWriter(Writer out, int size) {
+			super(out, size);
+		}
+	}
+
+	/**
+	 * Checks whether a writer was opened for compact output.
+	 *
+	 * @param writer the writer
+	 * @return true if compact output is written
+	 */
+	private static boolean isCompact(Writer writer) {
+		return writer instanceof CompactWriter;
+	}
+
+	/**
+	 * Returns the line separator, or nothing in compact output.
+	 *
+	 * @param compact whether to write compact output
+	 * @return the line separator
+	 */
+	private static String newline(boolean compact) {
+		return compact ? "" : NEWLINE;
+	}
+
+	/**
+	 * Returns the separator between keys and values.
+	 *
+	 * @param compact whether to write compact output
+	 * @return the separator
+	 */
+	private static String colon(boolean compact) {
+		return compact ? ":" : ": ";
+	}
+
+	/**
+	 * Returns the indentation of a level, or nothing in compact output.
+	 *
+	 * @param times   the level
+	 * @param compact whether to write compact output
+	 * @return the indentation
+	 */
+	private static String tabs(int times, boolean compact) {
+		if (compact || times <= 0) {
+			return "";
+		}
+		return times < TABS.length ? TABS[times] : "\t".repeat(times);
+	}
+
+	/**
+	 * Opens a writer with a large buffer for pretty printed output.
+	 *
+	 * @param path the path
+	 * @return the writer
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static BufferedWriter newWriter(Path path) throws IOException {
+		return newWriter(path, false);
+	}
+
+	/**
+	 * Opens a writer with a large buffer. Everything written through it by this
+	 * class is compact, without indentation or line separators, if requested.
+	 *
+	 * @param path    the path
+	 * @param compact whether to write compact output
+	 * @return the writer
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static BufferedWriter newWriter(Path path, boolean compact) throws IOException {
+		Writer out = new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8.newEncoder());
+		return compact ? new CompactWriter(out, BUFFER) : new BufferedWriter(out, BUFFER);
+	}
+
 	/**
 	 * Writes several tab <code>\t</code> symbols using the provided {@link Writer}.
 	 *
@@ -25,9 +151,7 @@ public class JSONWriter {
 	 * @throws IOException if the writer encounters any issues
 	 */
 	public static void indent(int times, Writer writer) throws IOException {
-		for (int i = 0; i < times; i++) {
-			writer.write('\t');
-		}
+		writer.write(tabs(times, isCompact(writer)));
 	}
 
 	/**
@@ -43,6 +167,59 @@ public class JSONWriter {
 		writer.write('"');
 	}
 
+	/**
+	 * Appends the element surrounded by quotes.
+	 *
+	 * @param text the element
+	 * @param out  the output
+	 * @return the output
+	 */
+	private static StringBuilder quote(String text, StringBuilder out) {
+		return out.append('"').append(text).append('"');
+	}
+
+	/**
+	 * Formats a count the same way as {@code new DecimalFormat("0")}.
+	 *
+	 * @param count the count
+	 * @param out   the output
+	 */
+	private static void appendCount(int count, StringBuilder out) {
+		if (SYMBOLS.getZeroDigit() == '0' && count >= 0) {
+			out.append(count);
+		} else {
+			out.append(COUNT.get().format(count));
+		}
+	}
+
+	/**
+	 * Formats a score the same way as {@code new DecimalFormat("0.000000")},
+	 * rounding half to even. Scores are rounded directly unless they are too large
+	 * or too close to halfway between two outputs to round reliably, in which case
+	 * the decimal formatter is used instead.
+	 *
+	 * @param score the score
+	 * @param out   the output
+	 */
+	public static void appendScore(double score, StringBuilder out) {
+		if (score >= 0 && score < 1e6 && SYMBOLS.getZeroDigit() == '0') {
+			double scaled = score * 1e6;
+			double floor = Math.floor(scaled);
+			double fraction = scaled - floor;
+			if (Math.abs(fraction - 0.5) > 1e-3) {
+				long rounded = (long) floor + (fraction > 0.5 ? 1 : 0);
+				int decimals = (int) (rounded % 1000000);
+				out.append(rounded / 1000000).append(SYMBOLS.getDecimalSeparator());
+				for (int digit = 100000; digit > decimals && digit > 1; digit /= 10) {
+					out.append('0');
+				}
+				out.append(decimals);
+				return;
+			}
+		}
+		out.append(SCORE.get().format(score));
+	}
+
 	/**
 	 * Writes the set of elements formatted as a JSON array of numbers using the
 	 * provided {@link Writer} and indentation level.
@@ -53,22 +230,24 @@ public class JSONWriter {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public static void asArray(TreeSet<Integer> elements, Writer writer, int level) throws IOException {
-		if (elements.isEmpty()) {
-			writer.write(System.lineSeparator());
-			indent(level, writer);
-		} else {
-			writer.write(System.lineSeparator());
-			for (Integer element : elements.headSet(elements.last(), false)) {
-				indent(level + 1, writer);
-				writer.write(element.toString());
-				writer.write(',');
-				writer.write(System.lineSeparator());
+		boolean compact = isCompact(writer);
+		String newline = newline(compact);
+		String inner = tabs(level + 1, compact);
+		StringBuilder out = new StringBuilder(elements.size() * (inner.length() + 8) + 16);
+		out.append(newline);
+		if (!elements.isEmpty()) {
+			boolean first = true;
+			for (Integer element : elements) {
+				if (!first) {
+					out.append(',').append(newline);
+				}
+				out.append(inner).append(element.intValue());
+				first = false;
 			}
-			indent(level + 1, writer);
-			writer.write(elements.last().toString());
-			writer.write(System.lineSeparator());
-			indent(level, writer);
+			out.append(newline);
 		}
+		out.append(tabs(level, compact));
+		writer.append(out);
 	}
 
 	/**
@@ -81,29 +260,29 @@ public class JSONWriter {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public static void asObject(TreeMap<String, Integer> elements, Writer writer, int level) throws IOException {
-
-		if (elements.isEmpty()) {
-
-			writer.write("{" + System.lineSeparator() + "}");
-		} else {
-			int count = 0;
-			writer.write('{');
-			writer.write(System.lineSeparator());
-			for (Entry<String, Integer> element : elements.entrySet()) {
-				String key = element.getKey();
-				Integer value = element.getValue();
-				indent(level + 1, writer);
-				quote(key.toString(), writer);
-				writer.write(": ");
-				writer.write(value.toString());
-				if (count < elements.size() - 1) {
-					writer.write(',');
-				}
-				writer.write(System.lineSeparator());
-				count++;
+		boolean compact = isCompact(writer);
+		String newline = newline(compact);
+		String inner = tabs(level + 1, compact);
+		String colon = colon(compact);
+		StringBuilder out = new StringBuilder();
+		out.append('{').append(newline);
+		boolean first = true;
+		for (Entry<String, Integer> element : elements.entrySet()) {
+			if (!first) {
+				out.append(',').append(newline);
+			}
+			quote(element.getKey(), out.append(inner)).append(colon).append(element.getValue().intValue());
+			first = false;
+			if (out.length() >= BUFFER) {
+				writer.append(out);
+				out.setLength(0);
 			}
-			writer.write("}");
 		}
+		if (!elements.isEmpty()) {
+			out.append(newline);
+		}
+		out.append('}');
+		writer.append(out);
 	}
 
 	/**
@@ -116,18 +295,17 @@ public class JSONWriter {
 	 */
 	public static void asNestedObject(Entry<String, TreeSet<Integer>> elements, Writer writer, int level)
 			throws IOException {
+		boolean compact = isCompact(writer);
 		if (elements.getValue().isEmpty()) {
-			writer.write(System.lineSeparator());
+			writer.write(newline(compact));
 		} else {
-			writer.write(System.lineSeparator());
-			TreeSet<Integer> values = elements.getValue();
-			indent(level + 1, writer);
-			quote(elements.getKey(), writer);
-			writer.write(": ");
-			writer.write("[");
-			asArray(values, writer, level + 1);
+			StringBuilder out = new StringBuilder();
+			quote(elements.getKey(), out.append(newline(compact)).append(tabs(level + 1, compact)))
+					.append(colon(compact)).append('[');
+			writer.append(out);
+			asArray(elements.getValue(), writer, level + 1);
 		}
-		writer.write("]");
+		writer.write(']');
 	}
 
 	/**
@@ -140,24 +318,22 @@ public class JSONWriter {
 	 */
 	public static void asDoubleNestedObject(Entry<String, TreeMap<String, TreeSet<Integer>>> elements, Writer writer,
 			int level) throws IOException {
-
-		TreeMap<String, TreeSet<Integer>> subEntry = elements.getValue();
-		writer.write(System.lineSeparator());
-		indent(level, writer);
-		quote(elements.getKey(), writer);
-		writer.write(": ");
-		writer.write("{");
-		if (!subEntry.isEmpty()) {
-			Entry<String, TreeSet<Integer>> elemFirst = subEntry.firstEntry();
-			asNestedObject(elemFirst, writer, level + 1);
-			for (Entry<String, TreeSet<Integer>> head : subEntry.tailMap(elemFirst.getKey(), false).entrySet()) {
-				writer.write(",");
-				asNestedObject(head, writer, level + 1);
+		boolean compact = isCompact(writer);
+		StringBuilder out = new StringBuilder();
+		quote(elements.getKey(), out.append(newline(compact)).append(tabs(level, compact))).append(colon(compact))
+				.append('{');
+		writer.append(out);
+		boolean first = true;
+		for (Entry<String, TreeSet<Integer>> entry : elements.getValue().entrySet()) {
+			if (!first) {
+				writer.write(',');
 			}
+			asNestedObject(entry, writer, level + 1);
+			first = false;
 		}
-		writer.write(System.lineSeparator());
-		indent(level + 1, writer);
-		writer.write("}");
+		writer.write(newline(compact));
+		writer.write(tabs(level + 1, compact));
+		writer.write('}');
 	}
 
 	/**
@@ -171,23 +347,22 @@ public class JSONWriter {
 	 */
 	public static void asInvertedIndex(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements, Writer writer,
 			int level) throws IOException {
-
+		String newline = newline(isCompact(writer));
+		writer.write('{');
 		if (elements.isEmpty()) {
-			writer.write("{");
-			writer.write(System.lineSeparator());
-			writer.write("}");
+			writer.write(newline);
 		} else {
-			writer.write("{");
-			Entry<String, TreeMap<String, TreeSet<Integer>>> elemFirst = elements.firstEntry();
-			asDoubleNestedObject(elemFirst, writer, 1);
-			for (Entry<String, TreeMap<String, TreeSet<Integer>>> head : elements.tailMap(elemFirst.getKey(), false)
-					.entrySet()) {
-				writer.write(",");
-				asDoubleNestedObject(head, writer, 1);
+			boolean first = true;
+			for (Entry<String, TreeMap<String, TreeSet<Integer>>> entry : elements.entrySet()) {
+				if (!first) {
+					writer.write(',');
+				}
+				asDoubleNestedObject(entry, writer, 1);
+				first = false;
 			}
-			writer.write(System.lineSeparator());
-			writer.write("}");
+			writer.write(newline);
 		}
+		writer.write('}');
 	}
 
 	/**
@@ -199,31 +374,32 @@ public class JSONWriter {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public static void asQueryResult(SearchResult result, Writer writer, int level) throws IOException {
-		DecimalFormat FORMATTER = new DecimalFormat("0.000000");
-		DecimalFormat form = new DecimalFormat("0");
-		writer.write(System.lineSeparator());
-		indent(level + 2, writer);
-		writer.write("{");
-		writer.write(System.lineSeparator());
-		indent(level + 3, writer);
-		quote("where", writer);
-		writer.write(": ");
-		quote(result.getLocations(), writer);
-		writer.write(",");
-		writer.write(System.lineSeparator());
-		indent(level + 3, writer);
-		quote("count", writer);
-		writer.write(": ");
-		writer.write(form.format(result.getCount()));
-		writer.write(",");
-		writer.write(System.lineSeparator());
-		indent(level + 3, writer);
-		quote("score", writer);
-		writer.write(": ");
-		writer.write(FORMATTER.format(result.getScore()));
-		writer.write(System.lineSeparator());
-		indent(level + 2, writer);
-		writer.write("}");
+		StringBuilder out = new StringBuilder(128);
+		asQueryResult(result, out, level, isCompact(writer));
+		writer.append(out);
+	}
+
+	/**
+	 * Appends a result in JSON format.
+	 *
+	 * @param result  the result
+	 * @param out     the output
+	 * @param level   the level
+	 * @param compact whether to write compact output
+	 */
+	private static void asQueryResult(SearchResult result, StringBuilder out, int level, boolean compact) {
+		String newline = newline(compact);
+		String outer = tabs(level + 2, compact);
+		String inner = tabs(level + 3, compact);
+		String colon = colon(compact);
+		out.append(newline).append(outer).append('{').append(newline);
+		quote(result.getLocations(), quote("where", out.append(inner)).append(colon)).append(',').append(newline);
+		quote("count", out.append(inner)).append(colon);
+		appendCount(result.getCount(), out);
+		out.append(',').append(newline);
+		quote("score", out.append(inner)).append(colon);
+		appendScore(result.getScore(), out);
+		out.append(newline).append(outer).append('}');
 	}
 
 	/**
@@ -237,16 +413,21 @@ public class JSONWriter {
 	 */
 	public static void asQueryResultFormat(List<SearchResult> searchResults, Writer writer, int level)
 			throws IOException {
-		if (!searchResults.isEmpty()) {
-			Iterator<SearchResult> results = searchResults.iterator();
-			SearchResult firstResult = results.next();
-			asQueryResult(firstResult, writer, level);
-			while (results.hasNext()) {
-				SearchResult nextResult = results.next();
-				writer.write(",");
-				asQueryResult(nextResult, writer, level);
+		boolean compact = isCompact(writer);
+		StringBuilder out = new StringBuilder();
+		boolean first = true;
+		for (SearchResult result : searchResults) {
+			if (!first) {
+				out.append(',');
+			}
+			asQueryResult(result, out, level, compact);
+			first = false;
+			if (out.length() >= BUFFER) {
+				writer.append(out);
+				out.setLength(0);
 			}
 		}
+		writer.append(out);
 	}
 
 	/**
@@ -260,28 +441,33 @@ public class JSONWriter {
 	 */
 	public static void asQueryWord(TreeMap<String, List<SearchResult>> result, String key, Writer writer, int level)
 			throws IOException {
+		asQueryWord(key, result.get(key), writer, level);
+	}
 
-		indent(level, writer);
-		writer.write("{");
-		writer.write(System.lineSeparator());
-		indent(level + 1, writer);
-		quote("queries", writer);
-		writer.write(": ");
-		quote(key, writer);
-		writer.write(",");
-		writer.write(System.lineSeparator());
-		indent(level + 1, writer);
-		quote("results", writer);
-		writer.write(": [");
-		List<SearchResult> results = result.get(key);
+	/**
+	 * As query word helper to write one query and its results in JSON Format
+	 *
+	 * @param key     the key
+	 * @param results the results
+	 * @param writer  the writer
+	 * @param level   the level
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asQueryWord(String key, List<SearchResult> results, Writer writer, int level)
+			throws IOException {
+		boolean compact = isCompact(writer);
+		String newline = newline(compact);
+		String inner = tabs(level + 1, compact);
+		String colon = colon(compact);
+		StringBuilder out = new StringBuilder();
+		out.append(tabs(level, compact)).append('{').append(newline);
+		quote(key, quote("queries", out.append(inner)).append(colon)).append(',').append(newline);
+		quote("results", out.append(inner)).append(colon).append('[');
+		writer.append(out);
 		asQueryResultFormat(results, writer, 1);
-		writer.write(System.lineSeparator());
-		indent(level + 1, writer);
-		writer.write("]");
-		writer.write(System.lineSeparator());
-		indent(level, writer);
-		writer.write("}");
-
+		out.setLength(0);
+		out.append(newline).append(inner).append(']').append(newline).append(tabs(level, compact)).append('}');
+		writer.append(out);
 	}
 
 	/**
@@ -292,22 +478,55 @@ public class JSONWriter {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public static void asQuery(TreeMap<String, List<SearchResult>> queryResult, Writer writer) throws IOException {
+		startQueries(writer);
+		boolean first = true;
+		for (Entry<String, List<SearchResult>> entry : queryResult.entrySet()) {
+			asQueryEntry(entry.getKey(), entry.getValue(), writer, first);
+			first = false;
+		}
+		endQueries(writer);
+	}
 
-		writer.write("[");
-		writer.write(System.lineSeparator());
-		if (!queryResult.keySet().isEmpty()) {
-			Iterator<String> key = queryResult.keySet().iterator();
-			String first = key.next();
-			asQueryWord(queryResult, first, writer, 1);
-			while (key.hasNext()) {
-				String next = key.next();
-				writer.write(",");
-				writer.write(System.lineSeparator());
-				asQueryWord(queryResult, next, writer, 1);
-			}
+	/**
+	 * Starts writing queries one at a time, in the same format as
+	 * {@link #asQuery(TreeMap, Writer)}.
+	 *
+	 * @param writer the writer
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void startQueries(Writer writer) throws IOException {
+		writer.write('[');
+		writer.write(newline(isCompact(writer)));
+	}
+
+	/**
+	 * Writes the next query and its results, after
+	 * {@link #startQueries(Writer)}. Queries must be written in sorted order.
+	 *
+	 * @param key     the key
+	 * @param results the results
+	 * @param writer  the writer
+	 * @param first   whether this is the first query written
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asQueryEntry(String key, List<SearchResult> results, Writer writer, boolean first)
+			throws IOException {
+		if (!first) {
+			writer.write(',');
+			writer.write(newline(isCompact(writer)));
 		}
-		writer.write(System.lineSeparator());
-		writer.write("]");
+		asQueryWord(key, results, writer, 1);
+	}
+
+	/**
+	 * Finishes writing queries one at a time.
+	 *
+	 * @param writer the writer
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void endQueries(Writer writer) throws IOException {
+		writer.write(newline(isCompact(writer)));
+		writer.write(']');
 	}
 
 	/**
@@ -337,7 +556,7 @@ public class JSONWriter {
 	 * @throws IOException if the writer encounters any issues
 	 */
 	public static void asArray(TreeSet<Integer> elements, Path path) throws IOException {
-		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+		try (BufferedWriter writer = newWriter(path)) {
 			asArray(elements, writer, 0);
 		}
 	}
@@ -368,11 +587,198 @@ public class JSONWriter {
 	 */
 	public static void asInvertedIndex(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements, Path path)
 			throws IOException {
-		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);) {
+		asInvertedIndex(elements, path, false);
+	}
+
+	/**
+	 * Writes the double nested map of elements formatted as a nested JSON object
+	 * to the specified file, pretty printed or compact.
+	 *
+	 * @param elements the elements to convert to JSON
+	 * @param path     the path to the file write to output
+	 * @param compact  whether to write compact output
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public static void asInvertedIndex(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements, Path path,
+			boolean compact) throws IOException {
+		try (BufferedWriter writer = newWriter(path, compact)) {
 			asInvertedIndex(elements, writer, 0);
 		}
 	}
 
+	/**
+	 * Writes the words of a snapshot as a nested JSON object to the specified
+	 * file, in the same format as {@link #asInvertedIndex(TreeMap, Path)}. The
+	 * words are split into ranges of roughly equal output size, which the worker
+	 * threads format and encode while the calling thread writes the finished
+	 * ranges in order. At most {@link #WINDOW} ranges per thread are held in
+	 * memory at once.
+	 *
+	 * @param snapshot the snapshot
+	 * @param path     the path to the file write to output
+	 * @param threads  the number of worker threads, or 1 to format the ranges in
+	 *                 the calling thread
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public static void asInvertedIndex(IndexSnapshot snapshot, Path path, int threads) throws IOException {
+		asInvertedIndex(snapshot, path, threads, false);
+	}
+
+	/**
+	 * Writes the words of a snapshot as a nested JSON object to the specified
+	 * file, pretty printed or compact, as
+	 * {@link #asInvertedIndex(IndexSnapshot, Path, int)} does.
+	 *
+	 * @param snapshot the snapshot
+	 * @param path     the path to the file write to output
+	 * @param threads  the number of worker threads, or 1 to format the ranges in
+	 *                 the calling thread
+	 * @param compact  whether to write compact output
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public static void asInvertedIndex(IndexSnapshot snapshot, Path path, int threads, boolean compact)
+			throws IOException {
+		int[] bounds = termRanges(snapshot, threads);
+		int ranges = bounds.length - 1;
+		WorkQueue minions = threads > 1 ? new WorkQueue(threads) : null;
+		ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+		try (OutputStream out = Files.newOutputStream(path)) {
+			out.write('{');
+			int next = 0;
+			for (int range = 0; range < ranges; range++) {
+				if (minions == null) {
+					out.write(encodeTermRange(snapshot, bounds[range], bounds[range + 1], compact));
+					continue;
+				}
+				while (next < ranges && pending.size() < WINDOW * threads) {
+					int low = bounds[next];
+					int high = bounds[++next];
+					CompletableFuture<byte[]> future = new CompletableFuture<>();
+					pending.add(future);
+					minions.execute(() -> {
+						try {
+							future.complete(encodeTermRange(snapshot, low, high, compact));
+						} catch (RuntimeException e) {
+							future.completeExceptionally(e);
+						}
+					});
+				}
+				out.write(pending.poll().join());
+			}
+			out.write(newline(compact).getBytes(StandardCharsets.UTF_8));
+			out.write('}');
+		} finally {
+			if (minions != null) {
+				minions.finish();
+				minions.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Splits the words of a snapshot into ranges of roughly equal output size,
+	 * several per thread so that a slow range does not hold up the others.
+	 *
+	 * @param snapshot the snapshot
+	 * @param threads  the number of worker threads
+	 * @return the first word id of each range, followed by the number of words
+	 */
+	private static int[] termRanges(IndexSnapshot snapshot, int threads) {
+		int terms = snapshot.terms();
+		long total = 0;
+		for (int term = 0; term < terms; term++) {
+			total += termSize(snapshot, term);
+		}
+		long target = Math.max(total / (Math.max(threads, 1) * 8L), BUFFER * 4L);
+		int[] bounds = new int[terms + 1];
+		int ranges = 0;
+		long size = 0;
+		for (int term = 0; term < terms; term++) {
+			if (term == 0 || size >= target) {
+				bounds[ranges++] = term;
+				size = 0;
+			}
+			size += termSize(snapshot, term);
+		}
+		bounds[ranges++] = terms;
+		return Arrays.copyOf(bounds, ranges);
+	}
+
+	/**
+	 * Estimates the number of characters written for a word.
+	 *
+	 * @param snapshot the snapshot
+	 * @param term     the word id
+	 * @return the estimated size
+	 */
+	private static long termSize(IndexSnapshot snapshot, int term) {
+		return 16 + snapshot.term(term).length() + snapshot.documentFrequency(term) * 48L
+				+ snapshot.collectionFrequency(term) * 10L;
+	}
+
+	/**
+	 * Formats a range of words of a snapshot and encodes them in UTF-8.
+	 *
+	 * @param snapshot the snapshot
+	 * @param low      the first word id
+	 * @param high     the word id after the last
+	 * @param compact  whether to write compact output
+	 * @return the encoded words
+	 */
+	private static byte[] encodeTermRange(IndexSnapshot snapshot, int low, int high, boolean compact) {
+		StringBuilder out = new StringBuilder();
+		asTermRange(snapshot, low, high, out, compact);
+		return out.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Appends a range of words of a snapshot in the same format as
+	 * {@link #asDoubleNestedObject(Entry, Writer, int)} at level 1, preceded by
+	 * the comma separating them from the words before the range.
+	 *
+	 * @param snapshot the snapshot
+	 * @param low      the first word id
+	 * @param high     the word id after the last
+	 * @param out      the output
+	 * @param compact  whether to write compact output
+	 */
+	private static void asTermRange(IndexSnapshot snapshot, int low, int high, StringBuilder out,
+			boolean compact) {
+		String newline = newline(compact);
+		String colon = colon(compact);
+		String word = tabs(1, compact);
+		String close = tabs(2, compact);
+		String location = tabs(3, compact);
+		String position = tabs(4, compact);
+		for (int term = low; term < high; term++) {
+			if (term > 0) {
+				out.append(',');
+			}
+			quote(snapshot.term(term), out.append(newline).append(word)).append(colon).append('{');
+			int[] postings = snapshot.postings(term);
+			for (int i = 0; i < postings.length; i++) {
+				if (i > 0) {
+					out.append(',');
+				}
+				int[] positions = snapshot.positions(term, i);
+				out.append(newline);
+				if (positions.length > 0) {
+					quote(snapshot.location(postings[i]), out.append(location)).append(colon).append('[');
+					out.append(newline);
+					for (int j = 0; j < positions.length; j++) {
+						if (j > 0) {
+							out.append(',').append(newline);
+						}
+						out.append(position).append(positions[j]);
+					}
+					out.append(newline).append(location);
+				}
+				out.append(']');
+			}
+			out.append(newline).append(close).append('}');
+		}
+	}
+
 	/**
 	 * Returns the query map formatted
 	 *
@@ -394,7 +800,20 @@ public class JSONWriter {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public static void asQuery(TreeMap<String, List<SearchResult>> queryResult, Path path) throws IOException {
-		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);) {
+		asQuery(queryResult, path, false);
+	}
+
+	/**
+	 * Writes the query map formatted, pretty printed or compact
+	 *
+	 * @param queryResult the query result
+	 * @param path        the path
+	 * @param compact     whether to write compact output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asQuery(TreeMap<String, List<SearchResult>> queryResult, Path path, boolean compact)
+			throws IOException {
+		try (BufferedWriter writer = newWriter(path, compact)) {
 			asQuery(queryResult, writer);
 		}
 	}
@@ -407,7 +826,19 @@ public class JSONWriter {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public static void asObject(TreeMap<String, Integer> elements, Path path) throws IOException {
-		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+		asObject(elements, path, false);
+	}
+
+	/**
+	 * Writes as an object, pretty printed or compact
+	 *
+	 * @param elements the elements
+	 * @param path     the path
+	 * @param compact  whether to write compact output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void asObject(TreeMap<String, Integer> elements, Path path, boolean compact) throws IOException {
+		try (BufferedWriter writer = newWriter(path, compact)) {
 			asObject(elements, writer, 0);
 		}
 	}
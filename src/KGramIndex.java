@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+/**
+ * The Class KGramIndex maps every k-gram (k consecutive characters) of the
+ * words in an index to the words containing it. Words are padded with
+ * {@link #BOUNDARY} on both ends so k-grams at the start and end of a word can
+ * be told apart. It is built from the words of a snapshot the first time a
+ * wildcard pattern is searched, and frozen into a {@link WildcardIndex}.
+ */
+public class KGramIndex {
+
+	/** The default number of characters per gram. */
+	public static final int DEFAULT = 3;
+
+	/** The character marking the start and end of a word. */
+	public static final char BOUNDARY = '$';
+
+	/** The number of characters per gram. */
+	private final int k;
+
+	/** The words containing each gram, in the order they were added. */
+	private final HashMap<String, ArrayList<String>> grams;
+
+	/**
+	 * Instantiates a new trigram index.
+	 */
+	public KGramIndex() {
+		this(DEFAULT);
+	}
+
+	/**
+	 * Instantiates a new k-gram index.
+	 *
+	 * @param k the number of characters per gram
+	 */
+	public KGramIndex(int k) {
+		this.k = k;
+		this.grams = new HashMap<>();
+	}
+
+	/**
+	 * Adds a new word. Each word must only be added once.
+	 *
+	 * @param word the word
+	 */
+	public void add(String word) {
+		String padded = BOUNDARY + word + BOUNDARY;
+		for (int i = 0; i + k <= padded.length(); i++) {
+			String gram = padded.substring(i, i + k);
+			// a word repeating a gram is only listed under it once
+			if (padded.indexOf(gram) == i) {
+				grams.computeIfAbsent(gram, key -> new ArrayList<>()).add(word);
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of characters per gram.
+	 *
+	 * @return the number of characters per gram
+	 */
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * Returns the number of distinct grams.
+	 *
+	 * @return the number of grams
+	 */
+	public int size() {
+		return grams.size();
+	}
+
+	/**
+	 * Freezes the grams into sorted word ids of a dictionary, ignoring words that
+	 * are not in the dictionary.
+	 *
+	 * @param dictionary the dictionary of a snapshot
+	 * @return the frozen wildcard index
+	 */
+	public WildcardIndex freeze(TermDictionary dictionary) {
+		HashMap<String, int[]> frozen = new HashMap<>();
+		for (Entry<String, ArrayList<String>> entry : grams.entrySet()) {
+			int[] terms = new int[entry.getValue().size()];
+			int size = 0;
+			for (String word : entry.getValue()) {
+				int term = dictionary.id(word);
+				if (term >= 0) {
+					terms[size++] = term;
+				}
+			}
+			int[] sorted = Arrays.copyOf(terms, size);
+			Arrays.sort(sorted);
+			frozen.put(entry.getKey(), sorted);
+		}
+		return new WildcardIndex(k, frozen, dictionary);
+	}
+}
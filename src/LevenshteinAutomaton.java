@@ -0,0 +1,129 @@
+import java.util.Arrays;
+
+/**
+ * The Class LevenshteinAutomaton accepts the words within a maximum edit
+ * distance of a target word. A state is the row of edit distances between the
+ * characters read so far and every prefix of the target, and each character
+ * read computes the next row. Walking the automaton down the trie of a
+ * {@link TermDictionary} visits only the branches that can still lead to a
+ * match, instead of computing the distance to every word.
+ */
+public class LevenshteinAutomaton {
+
+	/** The target word. */
+	private final String target;
+
+	/** The maximum edit distance. */
+	private final int distance;
+
+	/**
+	 * Instantiates a new Levenshtein automaton.
+	 *
+	 * @param target   the target word
+	 * @param distance the maximum edit distance
+	 */
+	public LevenshteinAutomaton(String target, int distance) {
+		this.target = target;
+		this.distance = distance;
+	}
+
+	/**
+	 * Returns the state before any character is read.
+	 *
+	 * @return the start state
+	 */
+	public int[] start() {
+		int[] row = new int[target.length() + 1];
+		for (int i = 0; i < row.length; i++) {
+			row[i] = i;
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the state after reading a character.
+	 *
+	 * @param state the current state
+	 * @param c     the character
+	 * @return the next state
+	 */
+	public int[] step(int[] state, char c) {
+		int[] next = new int[state.length];
+		next[0] = state[0] + 1;
+		for (int i = 1; i < state.length; i++) {
+			int substitute = state[i - 1] + (target.charAt(i - 1) == c ? 0 : 1);
+			next[i] = Math.min(substitute, Math.min(state[i] + 1, next[i - 1] + 1));
+		}
+		return next;
+	}
+
+	/**
+	 * Tests whether the characters read so far are within the distance.
+	 *
+	 * @param state the state
+	 * @return true if the state accepts
+	 */
+	public boolean isMatch(int[] state) {
+		return state[state.length - 1] <= distance;
+	}
+
+	/**
+	 * Tests whether reading more characters could still lead to a match.
+	 *
+	 * @param state the state
+	 * @return true if a match is still reachable
+	 */
+	public boolean canMatch(int[] state) {
+		for (int cost : state) {
+			if (cost <= distance) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the sorted ids of the words of the dictionary within the distance,
+	 * by walking the automaton down its trie.
+	 *
+	 * @param dictionary the dictionary
+	 * @return the word ids
+	 */
+	public int[] intersect(TermDictionary dictionary) {
+		int[] matches = new int[16];
+		int size = 0;
+
+		// depth first, children in label order, so matches come out sorted
+		int[] nodes = new int[64];
+		int[][] states = new int[64][];
+		int top = 0;
+		nodes[0] = dictionary.root();
+		states[0] = start();
+		while (top >= 0) {
+			int node = nodes[top];
+			int[] state = states[top];
+			top--;
+
+			if (dictionary.isTerminal(node) && isMatch(state)) {
+				if (size == matches.length) {
+					matches = Arrays.copyOf(matches, size * 2);
+				}
+				matches[size++] = dictionary.low(node);
+			}
+
+			int first = dictionary.firstChild(node);
+			for (int child = first + dictionary.degree(node) - 1; child >= first; child--) {
+				int[] next = step(state, dictionary.label(child));
+				if (canMatch(next)) {
+					if (++top == nodes.length) {
+						nodes = Arrays.copyOf(nodes, top * 2);
+						states = Arrays.copyOf(states, top * 2);
+					}
+					nodes[top] = child;
+					states[top] = next;
+				}
+			}
+		}
+		return Arrays.copyOf(matches, size);
+	}
+}
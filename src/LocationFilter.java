@@ -0,0 +1,157 @@
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * The Class LocationFilter restricts searches to some of the indexed locations,
+ * either those under a path, those matching a glob pattern, or those in a list.
+ * The filter is resolved into a set of location ids once per index snapshot.
+ * Since location ids follow the sorted order of locations, the locations under
+ * a path always form a single range of ids.
+ */
+public class LocationFilter {
+
+	/** The path locations must be under, or null. */
+	private final String directory;
+
+	/** The glob locations must match, or null. */
+	private final PathMatcher glob;
+
+	/** The locations to keep, or null. */
+	private final TreeSet<String> files;
+
+	/** The description of the filter. */
+	private final String description;
+
+	/** The snapshot the filter was last resolved against. */
+	private IndexSnapshot resolvedFor;
+
+	/** The ids of the locations kept in that snapshot. */
+	private BitSet resolved;
+
+	/**
+	 * Instantiates a new location filter.
+	 *
+	 * @param directory   the path locations must be under, or null
+	 * @param glob        the glob locations must match, or null
+	 * @param files       the locations to keep, or null
+	 * @param description the description of the filter
+	 */
+	private LocationFilter(String directory, PathMatcher glob, TreeSet<String> files, String description) {
+		this.directory = directory;
+		this.glob = glob;
+		this.files = files;
+		this.description = description;
+		this.resolvedFor = null;
+		this.resolved = null;
+	}
+
+	/**
+	 * Keeps the locations under a path, which is either the location itself or a
+	 * directory containing it. A path of "/a/b" keeps "/a/b" and "/a/b/c.txt" but
+	 * not "/a/bc.txt".
+	 *
+	 * @param path the path
+	 * @return the filter
+	 */
+	public static LocationFilter under(String path) {
+		String directory = path;
+		while (directory.length() > 1 && directory.endsWith(File.separator)) {
+			directory = directory.substring(0, directory.length() - 1);
+		}
+		return new LocationFilter(directory, null, null, "under " + directory);
+	}
+
+	/**
+	 * Keeps the locations matching a glob pattern, such as "/data/**.txt". See
+	 * {@link java.nio.file.FileSystem#getPathMatcher(String)} for the syntax.
+	 *
+	 * @param pattern the glob pattern
+	 * @return the filter
+	 * @throws IllegalArgumentException if the pattern is invalid
+	 */
+	public static LocationFilter glob(String pattern) {
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		return new LocationFilter(null, matcher, null, "glob " + pattern);
+	}
+
+	/**
+	 * Keeps the listed locations.
+	 *
+	 * @param locations the locations
+	 * @return the filter
+	 */
+	public static LocationFilter files(Collection<String> locations) {
+		return new LocationFilter(null, null, new TreeSet<>(locations), "files " + locations.size());
+	}
+
+	/**
+	 * Returns the ids of the locations of a snapshot kept by the filter. The
+	 * result is cached until the filter is resolved against another snapshot, and
+	 * must not be modified.
+	 *
+	 * @param snapshot the snapshot
+	 * @return the ids of the locations kept
+	 */
+	public synchronized BitSet resolve(IndexSnapshot snapshot) {
+		if (resolvedFor != snapshot) {
+			resolved = compute(snapshot);
+			resolvedFor = snapshot;
+		}
+		return resolved;
+	}
+
+	/**
+	 * Computes the ids of the locations of a snapshot kept by the filter.
+	 *
+	 * @param snapshot the snapshot
+	 * @return the ids of the locations kept
+	 */
+	private BitSet compute(IndexSnapshot snapshot) {
+		BitSet kept = new BitSet(snapshot.documents());
+		if (directory != null) {
+			int self = snapshot.documentId(directory);
+			if (self >= 0) {
+				kept.set(self);
+			}
+			String prefix = directory.endsWith(File.separator) ? directory : directory + File.separator;
+			String limit = prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
+			kept.set(lowerBound(snapshot, prefix), lowerBound(snapshot, limit));
+		} else if (glob != null) {
+			for (int document = 0; document < snapshot.documents(); document++) {
+				if (glob.matches(Paths.get(snapshot.location(document)))) {
+					kept.set(document);
+				}
+			}
+		} else {
+			for (String file : files) {
+				int document = snapshot.documentId(file);
+				if (document >= 0) {
+					kept.set(document);
+				}
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * Finds the id of the first location not sorting before a key.
+	 *
+	 * @param snapshot the snapshot
+	 * @param key      the key
+	 * @return the location id
+	 */
+	private static int lowerBound(IndexSnapshot snapshot, String key) {
+		int document = snapshot.documentId(key);
+		return document >= 0 ? document : -document - 1;
+	}
+
+	@Override
+	public String toString() {
+		return description;
+	}
+}
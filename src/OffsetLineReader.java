@@ -0,0 +1,149 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Class OffsetLineReader reads UTF-8 lines like
+ * {@link java.io.BufferedReader#readLine()}, ending lines at "\n", "\r" or
+ * "\r\n", while keeping track of the byte offset in the stream where each line
+ * starts. Malformed input is reported the same way as by a reader from
+ * {@link java.nio.file.Files#newBufferedReader(java.nio.file.Path)}.
+ */
+public class OffsetLineReader implements Closeable {
+
+	/** The stream. */
+	private final InputStream in;
+
+	/** The decoder. */
+	private final CharsetDecoder decoder;
+
+	/** The bytes read from the stream but not consumed yet. */
+	private final byte[] buffer;
+
+	/** The index of the next byte in the buffer. */
+	private int next;
+
+	/** The number of bytes in the buffer. */
+	private int limit;
+
+	/** The byte offset in the stream of the next byte. */
+	private long offset;
+
+	/** The byte offset in the stream of the last line read. */
+	private long lineStart;
+
+	/** The bytes of the current line. */
+	private byte[] line;
+
+	/**
+	 * Instantiates a new reader.
+	 *
+	 * @param in the stream
+	 */
+	public OffsetLineReader(InputStream in) {
+		this.in = in;
+		this.decoder = StandardCharsets.UTF_8.newDecoder();
+		this.buffer = new byte[8192];
+		this.next = 0;
+		this.limit = 0;
+		this.offset = 0;
+		this.lineStart = 0;
+		this.line = new byte[256];
+	}
+
+	/**
+	 * Reads the next line, without its line terminator.
+	 *
+	 * @return the line, or null at the end of the stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public String readLine() throws IOException {
+		lineStart = offset;
+		int length = 0;
+		int b;
+		while ((b = read()) != -1) {
+			if (b == '\n') {
+				break;
+			}
+			if (b == '\r') {
+				if (read() != '\n' && limit > 0) {
+					next--;
+					offset--;
+				}
+				break;
+			}
+			if (length == line.length) {
+				byte[] grown = new byte[length * 2];
+				System.arraycopy(line, 0, grown, 0, length);
+				line = grown;
+			}
+			line[length++] = (byte) b;
+		}
+		if (b == -1 && length == 0) {
+			return null;
+		}
+		return decoder.decode(ByteBuffer.wrap(line, 0, length)).toString();
+	}
+
+	/**
+	 * Gets the byte offset in the stream where the last line read starts.
+	 *
+	 * @return the byte offset
+	 */
+	public long getLineStart() {
+		return lineStart;
+	}
+
+	/**
+	 * Reads the next byte.
+	 *
+	 * @return the byte, or -1 at the end of the stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private int read() throws IOException {
+		if (next == limit) {
+			limit = in.read(buffer, 0, buffer.length);
+			next = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		offset++;
+		return buffer[next++] & 0xFF;
+	}
+
+	/**
+	 * Counts the bytes a range of characters takes in UTF-8.
+	 *
+	 * @param text  the text
+	 * @param start the first character
+	 * @param end   one past the last character
+	 * @return the number of bytes
+	 */
+	public static int utf8Length(CharSequence text, int start, int end) {
+		int bytes = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				bytes++;
+			} else if (c < 0x800) {
+				bytes += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+				bytes += 4;
+				i++;
+			} else {
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * The Enum OutputFormat selects how the index, the locations and the query
+ * results are written: as pretty or compact JSON, in the binary layout of
+ * {@link ColumnarWriter}, or as CBOR with the same structure as the JSON.
+ */
+public enum OutputFormat {
+
+	/** Pretty printed JSON, written by {@link JSONWriter}. */
+	JSON,
+
+	/** JSON without indentation or line separators, written by {@link JSONWriter}. */
+	COMPACT_JSON,
+
+	/** Length-prefixed columns, written by {@link ColumnarWriter}. */
+	COLUMNAR,
+
+	/** CBOR, written by {@link CBORWriter}. */
+	CBOR;
+
+	/**
+	 * Returns the format with the given name.
+	 *
+	 * @param name the name of the format, either json, columnar or cbor
+	 * @return the format, or JSON if the name is null
+	 * @throws IllegalArgumentException if the name is not recognized
+	 */
+	public static OutputFormat forName(String name) {
+		if (name == null) {
+			return JSON;
+		}
+		switch (name.toLowerCase()) {
+		case "json":
+			return JSON;
+		case "columnar":
+			return COLUMNAR;
+		case "cbor":
+			return CBOR;
+		default:
+			throw new IllegalArgumentException("Unknown format: " + name);
+		}
+	}
+}
@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * The Class PhraseQuery matches locations where the query words appear next to
+ * each other in order, written <code>"quick brown fox"</code>, or all within a
+ * window of positions in any order, written <code>"quick fox"~5</code>. Matches
+ * are found by intersecting the sorted postings of the words and then the
+ * sorted positions within each shared location. Phrase words always match
+ * whole stems, and matches are scored by the ratio of phrase matches to total
+ * words.
+ */
+public class PhraseQuery implements Query {
+
+	/** The stemmed words, in query order. */
+	private final List<String> words;
+
+	/** The proximity window, or 0 for an exact phrase. */
+	private final int slop;
+
+	/**
+	 * Instantiates a new phrase query.
+	 *
+	 * @param words the stemmed words, in order
+	 * @param slop  the proximity window, or 0 for an exact phrase
+	 */
+	public PhraseQuery(List<String> words, int slop) {
+		this.words = words;
+		this.slop = slop;
+	}
+
+	/**
+	 * Parses a query line as a phrase or proximity query if it is written as one.
+	 *
+	 * @param line    the query line
+	 * @param stemmer the stemmer to use
+	 * @return the phrase query, or null if the line is not a phrase
+	 */
+	public static PhraseQuery parse(String line, Stemmer stemmer) {
+		String trimmed = line.trim();
+		int close = trimmed.lastIndexOf('"');
+		if (!trimmed.startsWith("\"") || close <= 0) {
+			return null;
+		}
+
+		int slop = 0;
+		String rest = trimmed.substring(close + 1).trim();
+		if (rest.startsWith("~")) {
+			try {
+				slop = Math.max(0, Integer.parseInt(rest.substring(1).trim()));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		} else if (!rest.isEmpty()) {
+			return null;
+		}
+
+		List<String> words = TextFileStemmer.stemLine(trimmed.substring(1, close), stemmer);
+		return words.isEmpty() ? null : new PhraseQuery(words, slop);
+	}
+
+	/**
+	 * Gets the stemmed words, in query order.
+	 *
+	 * @return the words
+	 */
+	public List<String> getWords() {
+		return Collections.unmodifiableList(words);
+	}
+
+	/**
+	 * Gets the proximity window.
+	 *
+	 * @return the window, or 0 for an exact phrase
+	 */
+	public int getSlop() {
+		return slop;
+	}
+
+	@Override
+	public TopResults search(IndexSnapshot snapshot, boolean exact, ScoringModel model, int k, SearchBudget budget) {
+		List<String> distinct = slop > 0 ? new ArrayList<>(new LinkedHashSet<>(words)) : words;
+		int[] terms = new int[distinct.size()];
+		for (int i = 0; i < terms.length; i++) {
+			terms[i] = snapshot.termId(distinct.get(i));
+			if (terms[i] < 0) {
+				return new TopResults(Collections.emptyList(), 0);
+			}
+		}
+
+		// drive the intersection from the rarest word
+		int rarest = 0;
+		for (int i = 1; i < terms.length; i++) {
+			if (snapshot.documentFrequency(terms[i]) < snapshot.documentFrequency(terms[rarest])) {
+				rarest = i;
+			}
+		}
+
+		TopKCollector collector = new TopKCollector(k);
+		int[] cursors = new int[terms.length];
+		int[][] positions = new int[terms.length][];
+		int[] lead = snapshot.postings(terms[rarest]);
+		boolean partial = false;
+
+		candidates: for (int i = 0; i < lead.length; i++) {
+			if (budget != null && i % IndexSnapshot.BUDGET_INTERVAL == 0 && i > 0) {
+				budget.charge(IndexSnapshot.BUDGET_INTERVAL);
+				if (budget.isExceeded()) {
+					partial = true;
+					break;
+				}
+			}
+			int document = lead[i];
+			for (int t = 0; t < terms.length; t++) {
+				int[] postings = snapshot.postings(terms[t]);
+				cursors[t] = advance(postings, cursors[t], document);
+				if (cursors[t] == postings.length) {
+					break candidates;
+				}
+				if (postings[cursors[t]] != document) {
+					continue candidates;
+				}
+				positions[t] = snapshot.positions(terms[t], cursors[t]);
+			}
+
+			int matches = slop > 0 ? countWindows(positions, slop) : countPhrases(positions);
+			if (matches > 0) {
+				collector.offer(new SearchResult(snapshot.location(document), matches, snapshot.length(document)));
+			}
+		}
+		return new TopResults(collector.getResults(), collector.getTotalHits(), partial);
+	}
+
+	/**
+	 * Returns the first index at or after the start whose value is at least the
+	 * target, galloping ahead before searching so long skips stay cheap.
+	 *
+	 * @param sorted the sorted values
+	 * @param start  the index to start from
+	 * @param target the target value
+	 * @return the index, or the length of the array if every value is smaller
+	 */
+	static int advance(int[] sorted, int start, int target) {
+		int step = 1;
+		int low = start;
+		int high = start;
+		while (high < sorted.length && sorted[high] < target) {
+			low = high + 1;
+			high += step;
+			step <<= 1;
+		}
+		high = Math.min(high, sorted.length);
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] < target) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Counts the positions where every word appears directly after the previous
+	 * one.
+	 *
+	 * @param positions the sorted positions of each word, in phrase order
+	 * @return the number of phrase matches
+	 */
+	private static int countPhrases(int[][] positions) {
+		int[] cursors = new int[positions.length];
+		int matches = 0;
+
+		starts: for (int start : positions[0]) {
+			for (int t = 1; t < positions.length; t++) {
+				cursors[t] = advance(positions[t], cursors[t], start + t);
+				if (cursors[t] == positions[t].length) {
+					break starts;
+				}
+				if (positions[t][cursors[t]] != start + t) {
+					continue starts;
+				}
+			}
+			matches++;
+		}
+		return matches;
+	}
+
+	/**
+	 * Counts the windows of at most slop positions containing every word, sweeping
+	 * the sorted positions by always moving past the smallest one.
+	 *
+	 * @param positions the sorted positions of each word
+	 * @param slop      the window size
+	 * @return the number of windows
+	 */
+	private static int countWindows(int[][] positions, int slop) {
+		int[] cursors = new int[positions.length];
+		int matches = 0;
+
+		while (true) {
+			int min = 0;
+			int highest = Integer.MIN_VALUE;
+			for (int t = 0; t < positions.length; t++) {
+				int position = positions[t][cursors[t]];
+				if (position < positions[min][cursors[min]]) {
+					min = t;
+				}
+				highest = Math.max(highest, position);
+			}
+			if (highest - positions[min][cursors[min]] <= slop) {
+				matches++;
+			}
+			if (++cursors[min] == positions[min].length) {
+				return matches;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		String phrase = "'" + String.join(" ", words) + "'";
+		return slop > 0 ? phrase + "~" + slop : phrase;
+	}
+}
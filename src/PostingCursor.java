@@ -0,0 +1,109 @@
+/**
+ * The Class PostingCursor iterates over the postings of one word in an
+ * {@link IndexSnapshot}. Skip pointers are placed every square root of the
+ * posting length, so advancing to a distant location jumps over whole blocks
+ * instead of visiting every posting in between.
+ */
+public class PostingCursor implements PostingIterator {
+
+	/** The index snapshot. */
+	private final IndexSnapshot snapshot;
+
+	/** The word id. */
+	private final int term;
+
+	/** The sorted location ids. */
+	private final int[] postings;
+
+	/** The word counts, parallel to the location ids. */
+	private final int[] frequencies;
+
+	/** The distance between skip pointers. */
+	private final int skip;
+
+	/** The weight of the word, if scored. */
+	private final double weight;
+
+	/** The current index into the postings. */
+	private int current;
+
+	/** The number of postings visited. */
+	private long visited;
+
+	/**
+	 * Instantiates a new posting cursor positioned on the first location.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param term     the word id
+	 * @param model    the scoring model, or null if the cursor is not scored
+	 */
+	public PostingCursor(IndexSnapshot snapshot, int term, ScoringModel model) {
+		this.snapshot = snapshot;
+		this.term = term;
+		this.postings = snapshot.postings(term);
+		this.frequencies = snapshot.frequencies(term);
+		this.skip = Math.max(1, (int) Math.sqrt(postings.length));
+		this.weight = model == null ? 0 : model.weight(snapshot, term);
+		this.current = 0;
+		this.visited = postings.length == 0 ? 0 : 1;
+	}
+
+	/**
+	 * Gets the word id.
+	 *
+	 * @return the word id
+	 */
+	public int getTerm() {
+		return term;
+	}
+
+	/**
+	 * Returns the index of the current location in the postings of the word.
+	 *
+	 * @return the index
+	 */
+	public int index() {
+		return current;
+	}
+
+	@Override
+	public int doc() {
+		return current < postings.length ? postings[current] : NO_MORE;
+	}
+
+	@Override
+	public int frequency() {
+		return frequencies[current];
+	}
+
+	@Override
+	public double score(ScoringModel model) {
+		return model.score(snapshot, weight, frequencies[current], postings[current]);
+	}
+
+	@Override
+	public int next() {
+		current++;
+		visited++;
+		return doc();
+	}
+
+	@Override
+	public int advance(int target) {
+		// follow skip pointers while they do not pass the target
+		while (current + skip < postings.length && postings[current + skip] <= target) {
+			current += skip;
+			visited++;
+		}
+		while (current < postings.length && postings[current] < target) {
+			current++;
+			visited++;
+		}
+		return doc();
+	}
+
+	@Override
+	public long visited() {
+		return visited;
+	}
+}
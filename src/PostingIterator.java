@@ -0,0 +1,53 @@
+/**
+ * The Interface PostingIterator walks the locations containing a word in
+ * increasing location id order, one location at a time.
+ */
+public interface PostingIterator {
+
+	/** The location id returned once the postings are exhausted. */
+	public static final int NO_MORE = Integer.MAX_VALUE;
+
+	/**
+	 * Returns the current location id.
+	 *
+	 * @return the location id, or {@link #NO_MORE} if exhausted
+	 */
+	public int doc();
+
+	/**
+	 * Returns the number of times the word appears in the current location.
+	 *
+	 * @return the word count
+	 */
+	public int frequency();
+
+	/**
+	 * Scores the current location.
+	 *
+	 * @param model the scoring model
+	 * @return the score
+	 */
+	public double score(ScoringModel model);
+
+	/**
+	 * Moves to the next location.
+	 *
+	 * @return the new location id, or {@link #NO_MORE} if exhausted
+	 */
+	public int next();
+
+	/**
+	 * Moves to the first location at or after the target.
+	 *
+	 * @param target the target location id
+	 * @return the new location id, or {@link #NO_MORE} if exhausted
+	 */
+	public int advance(int target);
+
+	/**
+	 * Returns the number of locations this iterator has stepped over so far.
+	 *
+	 * @return the postings visited
+	 */
+	public long visited();
+}
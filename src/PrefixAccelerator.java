@@ -0,0 +1,200 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * The Class PrefixAccelerator keeps the merged postings of the most expensive
+ * short prefixes of an {@link IndexSnapshot}, so partial searches for them use
+ * the stored postings instead of merging thousands of words. Prefixes of up to
+ * {@link #MAX_LENGTH} characters are chosen by how many postings they would
+ * merge, weighted by how often they appear in a query log if one is given,
+ * until the memory budget is used up.
+ */
+public class PrefixAccelerator {
+
+	/** The longest prefix considered. */
+	public static final int MAX_LENGTH = 3;
+
+	/** The estimated memory used per stored posting, in bytes. */
+	private static final int POSTING_BYTES = 8;
+
+	/** The stored merged postings by prefix. */
+	private final HashMap<String, PrefixPostings> prefixes;
+
+	/** The estimated memory used by the stored postings, in bytes. */
+	private long bytes;
+
+	/**
+	 * Chooses and merges the prefixes to store.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param budget   the memory budget, in bytes
+	 * @param queryLog the number of times each prefix was searched, or null to
+	 *                 choose by postings alone
+	 */
+	PrefixAccelerator(IndexSnapshot snapshot, long budget, Map<String, Integer> queryLog) {
+		prefixes = new HashMap<>();
+		bytes = 0;
+
+		// the number of postings merged by a range of words, from running sums
+		long[] sums = new long[snapshot.terms() + 1];
+		for (int term = 0; term < snapshot.terms(); term++) {
+			sums[term + 1] = sums[term] + snapshot.documentFrequency(term);
+		}
+
+		List<Candidate> candidates = new ArrayList<>();
+		TermDictionary dictionary = snapshot.getDictionary();
+		collect(dictionary, dictionary.root(), "", sums, snapshot.documents(), queryLog, candidates);
+		Collections.sort(candidates);
+
+		for (Candidate candidate : candidates) {
+			if (bytes + candidate.size * POSTING_BYTES > budget) {
+				continue;
+			}
+			PrefixPostings merged = snapshot.mergePostings(candidate.low, candidate.high);
+			prefixes.put(candidate.prefix, merged);
+			bytes += (long) merged.size() * POSTING_BYTES;
+		}
+	}
+
+	/**
+	 * Collects the prefixes below a trie node worth storing, which are those
+	 * spanning more than one word.
+	 *
+	 * @param dictionary the dictionary
+	 * @param node       the trie node
+	 * @param prefix     the prefix leading to the node
+	 * @param sums       the running sums of document frequencies
+	 * @param documents  the number of locations
+	 * @param queryLog   the query log, or null
+	 * @param candidates the candidates found
+	 */
+	private static void collect(TermDictionary dictionary, int node, String prefix, long[] sums, int documents,
+			Map<String, Integer> queryLog, List<Candidate> candidates) {
+		int low = dictionary.low(node);
+		int high = dictionary.high(node);
+		if (!prefix.isEmpty() && high - low > 1) {
+			long merged = sums[high] - sums[low];
+			long benefit = merged;
+			if (queryLog != null) {
+				benefit *= queryLog.getOrDefault(prefix, 0);
+			}
+			if (benefit > 0) {
+				candidates.add(new Candidate(prefix, low, high, Math.min(merged, documents), benefit));
+			}
+		}
+		if (prefix.length() < MAX_LENGTH) {
+			int first = dictionary.firstChild(node);
+			for (int child = first; child < first + dictionary.degree(node); child++) {
+				collect(dictionary, child, prefix + dictionary.label(child), sums, documents, queryLog, candidates);
+			}
+		}
+	}
+
+	/**
+	 * Returns the stored merged postings of a prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return the merged postings, or null if the prefix is not stored
+	 */
+	public PrefixPostings get(String prefix) {
+		return prefix.length() > MAX_LENGTH ? null : prefixes.get(prefix);
+	}
+
+	/**
+	 * Returns the number of stored prefixes.
+	 *
+	 * @return the number of prefixes
+	 */
+	public int size() {
+		return prefixes.size();
+	}
+
+	/**
+	 * Returns the estimated memory used by the stored postings.
+	 *
+	 * @return the memory used, in bytes
+	 */
+	public long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Counts how often each short prefix of every stemmed query word appears in a
+	 * query log with one query per line.
+	 *
+	 * @param path the query log
+	 * @return the number of times each prefix was searched
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static TreeMap<String, Integer> readQueryLog(Path path) throws IOException {
+		TreeMap<String, Integer> counts = new TreeMap<>();
+		Stemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				for (String word : TextFileStemmer.stemLine(line, stemmer)) {
+					if (word.length() <= MAX_LENGTH) {
+						counts.merge(word, 1, Integer::sum);
+					}
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * A prefix that could be stored.
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+
+		/** The prefix. */
+		private final String prefix;
+
+		/** The first word id. */
+		private final int low;
+
+		/** One past the last word id. */
+		private final int high;
+
+		/** The most locations the merged postings can have. */
+		private final long size;
+
+		/** The number of postings saved each time the prefix is searched. */
+		private final long benefit;
+
+		/**
+		 * Instantiates a new candidate.
+		 *
+		 * @param prefix  the prefix
+		 * @param low     the first word id
+		 * @param high    one past the last word id
+		 * @param size    the most locations of the merged postings
+		 * @param benefit the benefit
+		 */
+		public Candidate(String prefix, int low, int high, long size, long benefit) {
+			this.prefix = prefix;
+			this.low = low;
+			this.high = high;
+			this.size = size;
+			this.benefit = benefit;
+		}
+
+		@Override
+		public int compareTo(Candidate o) {
+			// most postings saved per byte first
+			return Double.compare((double) o.benefit / o.size, (double) benefit / size);
+		}
+	}
+}
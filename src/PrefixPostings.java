@@ -0,0 +1,53 @@
+/**
+ * The Class PrefixPostings stores the merged postings of every word starting
+ * with a prefix: the sorted ids of the locations containing any of the words and
+ * the total number of times they appear in each location.
+ */
+public class PrefixPostings {
+
+	/** The sorted location ids. */
+	private final int[] documents;
+
+	/** The word counts, parallel to the location ids. */
+	private final int[] counts;
+
+	/**
+	 * Instantiates new merged postings.
+	 *
+	 * @param documents the sorted location ids
+	 * @param counts    the word counts
+	 */
+	public PrefixPostings(int[] documents, int[] counts) {
+		this.documents = documents;
+		this.counts = counts;
+	}
+
+	/**
+	 * Returns the number of locations.
+	 *
+	 * @return the number of locations
+	 */
+	public int size() {
+		return documents.length;
+	}
+
+	/**
+	 * Returns the location id at an index.
+	 *
+	 * @param i the index
+	 * @return the location id
+	 */
+	public int document(int i) {
+		return documents[i];
+	}
+
+	/**
+	 * Returns the word count at an index.
+	 *
+	 * @param i the index
+	 * @return the word count
+	 */
+	public int count(int i) {
+		return counts[i];
+	}
+}
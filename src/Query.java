@@ -0,0 +1,59 @@
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * The Interface Query is a query line with structure beyond a plain set of
+ * words, such as a phrase or boolean operators. Its string form is used as the
+ * key of its results.
+ */
+public interface Query {
+
+	/**
+	 * Finds the locations matching the query.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param exact    whether to match whole words instead of prefixes
+	 * @param model    the scoring model, or null to score by ratio of matches
+	 * @param k        the number of results to keep, or a non-positive number to
+	 *                 keep every result
+	 * @return the best results and the total number of matches
+	 */
+	public default TopResults search(IndexSnapshot snapshot, boolean exact, ScoringModel model, int k) {
+		return search(snapshot, exact, model, k, null);
+	}
+
+	/**
+	 * Finds the locations matching the query, stopping early once the budget is
+	 * exceeded.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param exact    whether to match whole words instead of prefixes
+	 * @param model    the scoring model, or null to score by ratio of matches
+	 * @param k        the number of results to keep, or a non-positive number to
+	 *                 keep every result
+	 * @param budget   the budget, or null to visit every match
+	 * @return the best results found and the number of matches found, flagged as
+	 *         partial if the search stopped early
+	 */
+	public TopResults search(IndexSnapshot snapshot, boolean exact, ScoringModel model, int k, SearchBudget budget);
+
+	/**
+	 * Parses a query line with structure, trying each kind of query in turn.
+	 *
+	 * @param line    the query line
+	 * @param stemmer the stemmer to use
+	 * @return the query, or null if the line is a plain set of words
+	 */
+	public static Query parse(String line, Stemmer stemmer) {
+		Query query = PhraseQuery.parse(line, stemmer);
+		if (query == null) {
+			query = BooleanQuery.parse(line, stemmer);
+		}
+		if (query == null) {
+			query = WildcardQuery.parse(line, stemmer);
+		}
+		if (query == null) {
+			query = FuzzyQuery.parse(line, stemmer);
+		}
+		return query;
+	}
+}
@@ -0,0 +1,319 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The Class QueryCache is a bounded least-recently-used cache of search results
+ * keyed by the stemmed query, the type of search and the scoring model. Besides
+ * every result of a query, single pages of results may be cached under a
+ * description of the page. Every entry remembers the generation of the index it
+ * was computed against, and is treated as a miss once the index has been
+ * modified since.
+ */
+public class QueryCache {
+
+	/** The default number of queries to keep. */
+	public static final int DEFAULT = 1000;
+
+	/** The cached results, kept in access order. */
+	private final LinkedHashMap<Key, Entry> cache;
+
+	/** The maximum number of cached queries. */
+	private final int capacity;
+
+	/** The number of lookups answered from the cache. */
+	private long hits;
+
+	/** The number of lookups that had to be searched. */
+	private long misses;
+
+	/**
+	 * Instantiates a new query cache with the default capacity.
+	 */
+	public QueryCache() {
+		this(DEFAULT);
+	}
+
+	/**
+	 * Instantiates a new query cache.
+	 *
+	 * @param capacity the maximum number of queries to keep
+	 */
+	public QueryCache(int capacity) {
+		this.capacity = capacity > 0 ? capacity : DEFAULT;
+		this.cache = new LinkedHashMap<>(16, 0.75f, true);
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Returns the cached results for a query, or null if the query has not been
+	 * cached against the given generation of the index.
+	 *
+	 * @param query      the joined stemmed query
+	 * @param exact      the exact boolean for searching
+	 * @param model      the scoring model, or null to score by ratio of matches
+	 * @param generation the current generation of the index
+	 * @return the cached results or null
+	 */
+	public synchronized List<SearchResult> get(String query, boolean exact, ScoringModel model, long generation) {
+		Entry entry = lookup(new Key(query, exact, ScoringModel.nameOf(model), ""), generation);
+		return entry == null ? null : entry.results;
+	}
+
+	/**
+	 * Returns a cached page of results for a query, or null if the page has not
+	 * been cached against the given generation of the index.
+	 *
+	 * @param query      the joined stemmed query
+	 * @param exact      the exact boolean for searching
+	 * @param model      the scoring model, or null to score by ratio of matches
+	 * @param page       the description of the page, such as its size and cursor
+	 * @param generation the current generation of the index
+	 * @return the cached page or null
+	 */
+	public synchronized ResultPage getPage(String query, boolean exact, ScoringModel model, String page,
+			long generation) {
+		Entry entry = lookup(new Key(query, exact, ScoringModel.nameOf(model), page), generation);
+		return entry == null ? null : entry.page;
+	}
+
+	/**
+	 * Looks up an entry, counting the hit or miss.
+	 *
+	 * @param key        the key
+	 * @param generation the current generation of the index
+	 * @return the entry, or null if missing or stale
+	 */
+	private Entry lookup(Key key, long generation) {
+		Entry entry = cache.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		if (entry.generation != generation) {
+			cache.remove(key);
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry;
+	}
+
+	/**
+	 * Caches the results of a query, evicting the least recently used query if the
+	 * cache is full.
+	 *
+	 * @param query      the joined stemmed query
+	 * @param exact      the exact boolean for searching
+	 * @param model      the scoring model, or null to score by ratio of matches
+	 * @param generation the generation of the index the results were computed
+	 *                   against
+	 * @param results    the search results
+	 */
+	public synchronized void put(String query, boolean exact, ScoringModel model, long generation,
+			List<SearchResult> results) {
+		store(new Key(query, exact, ScoringModel.nameOf(model), ""),
+				new Entry(generation, Collections.unmodifiableList(results), null));
+	}
+
+	/**
+	 * Caches a page of results of a query, evicting the least recently used
+	 * entry if the cache is full.
+	 *
+	 * @param query      the joined stemmed query
+	 * @param exact      the exact boolean for searching
+	 * @param model      the scoring model, or null to score by ratio of matches
+	 * @param page       the description of the page, such as its size and cursor
+	 * @param generation the generation of the index the page was computed
+	 *                   against
+	 * @param results    the page of results
+	 */
+	public synchronized void putPage(String query, boolean exact, ScoringModel model, String page, long generation,
+			ResultPage results) {
+		store(new Key(query, exact, ScoringModel.nameOf(model), page), new Entry(generation, null, results));
+	}
+
+	/**
+	 * Stores an entry, evicting the least recently used entry if the cache is
+	 * full.
+	 *
+	 * @param key   the key
+	 * @param entry the entry
+	 */
+	private void store(Key key, Entry entry) {
+		cache.put(key, entry);
+		if (cache.size() > capacity) {
+			Iterator<Key> eldest = cache.keySet().iterator();
+			eldest.next();
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Answers a parsed query line from the cache, or searches the index and
+	 * caches the results. Every caller searching whole query lines goes through
+	 * here, so they all handle budgets the same way: results of a search that
+	 * exceeded its budget are returned flagged as partial and never cached, since
+	 * the next search may finish in time.
+	 *
+	 * @param index    the index
+	 * @param parsed   the parsed query line
+	 * @param exact    the exact boolean for searching
+	 * @param model    the scoring model, or null to score by ratio of matches
+	 * @param budget   the budget, or null to visit every match
+	 * @param remember whether to cache the results
+	 * @return every result, flagged as partial if the search stopped early
+	 */
+	public TopResults search(InvertedIndex index, QueryLine parsed, boolean exact, ScoringModel model,
+			SearchBudget budget, boolean remember) {
+		String key = parsed.getKey();
+		long generation = index.getGeneration();
+		List<SearchResult> results = get(key, exact, model, generation);
+		if (results != null) {
+			return new TopResults(results, results.size());
+		}
+
+		TopResults top;
+		if (budget != null) {
+			top = parsed.getQuery() != null ? index.search(parsed.getQuery(), exact, model, budget)
+					: index.search(parsed.getWords(), exact, model, 0, budget);
+		} else {
+			results = parsed.getQuery() != null ? index.search(parsed.getQuery(), exact, model)
+					: index.search(parsed.getWords(), exact, model);
+			top = new TopResults(results, results.size());
+		}
+		if (!top.isPartial() && remember) {
+			put(key, exact, model, generation, top.getResults());
+		}
+		return top;
+	}
+
+	/**
+	 * Removes every cached query.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Returns the number of cached queries.
+	 *
+	 * @return the number of cached queries
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Gets the number of lookups answered from the cache.
+	 *
+	 * @return the hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that missed the cache.
+	 *
+	 * @return the misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the fraction of lookups answered from the cache.
+	 *
+	 * @return the hit rate, or 0 if there were no lookups
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d queries, %d hits, %d misses (%.2f%% hit rate)", cache.size(), hits, misses,
+				getHitRate() * 100);
+	}
+
+	/**
+	 * The key of a cached query.
+	 */
+	private static class Key {
+
+		/** The joined stemmed query. */
+		private final String query;
+
+		/** The exact boolean for searching. */
+		private final boolean exact;
+
+		/** The name of the scoring model. */
+		private final String model;
+
+		/** The description of the page, or empty for every result. */
+		private final String page;
+
+		/**
+		 * Instantiates a new key.
+		 *
+		 * @param query the query
+		 * @param exact the exact
+		 * @param model the name of the scoring model
+		 * @param page  the description of the page, or empty
+		 */
+		public Key(String query, boolean exact, String model, String page) {
+			this.query = query;
+			this.exact = exact;
+			this.model = model;
+			this.page = page;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return exact == other.exact && query.equals(other.query) && model.equals(other.model)
+					&& page.equals(other.page);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * (31 * query.hashCode() + model.hashCode()) + page.hashCode()) + (exact ? 1 : 0);
+		}
+	}
+
+	/**
+	 * The results or page of a cached query and the generation they belong to.
+	 */
+	private static class Entry {
+
+		/** The generation of the index. */
+		private final long generation;
+
+		/** The results, or null for a page. */
+		private final List<SearchResult> results;
+
+		/** The page, or null for every result. */
+		private final ResultPage page;
+
+		/**
+		 * Instantiates a new entry.
+		 *
+		 * @param generation the generation
+		 * @param results    the results, or null
+		 * @param page       the page, or null
+		 */
+		public Entry(long generation, List<SearchResult> results, ResultPage page) {
+			this.generation = generation;
+			this.results = results;
+			this.page = page;
+		}
+	}
+
+}
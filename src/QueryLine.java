@@ -0,0 +1,93 @@
+import java.util.TreeSet;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * The Class QueryLine stores one line of a query file parsed into either a
+ * structured {@link Query} or a bag of stemmed words, along with the key its
+ * results are stored under.
+ */
+public class QueryLine {
+
+	/** The key of the results, empty if there is nothing to search. */
+	private final String key;
+
+	/** The structured query, or null for a bag of words. */
+	private final Query query;
+
+	/** The stemmed words, empty for a structured query. */
+	private final TreeSet<String> words;
+
+	/**
+	 * Instantiates a new query line.
+	 *
+	 * @param key   the key of the results
+	 * @param query the structured query, or null
+	 * @param words the stemmed words
+	 */
+	private QueryLine(String key, Query query, TreeSet<String> words) {
+		this.key = key;
+		this.query = query;
+		this.words = words;
+	}
+
+	/**
+	 * Parses a line into its unique stemmed words, ignoring any query syntax.
+	 *
+	 * @param line    the line
+	 * @param stemmer the stemmer
+	 * @return the parsed line
+	 */
+	public static QueryLine parse(String line, Stemmer stemmer) {
+		return parse(line, stemmer, false);
+	}
+
+	/**
+	 * Parses a line into a structured query if operators are enabled and it is
+	 * one, or into its unique stemmed words otherwise. With operators, lines using
+	 * quotes, <code>AND</code>, <code>OR</code>, <code>NOT</code>, <code>+</code>,
+	 * <code>-</code>, <code>*</code> or <code>~</code> are searched and keyed as
+	 * structured queries instead of as plain words.
+	 *
+	 * @param line      the line
+	 * @param stemmer   the stemmer
+	 * @param operators whether to parse query syntax
+	 * @return the parsed line
+	 */
+	public static QueryLine parse(String line, Stemmer stemmer, boolean operators) {
+		Query query = operators ? Query.parse(line, stemmer) : null;
+		TreeSet<String> words = new TreeSet<>();
+		if (query != null) {
+			return new QueryLine(query.toString(), query, words);
+		}
+		TextFileStemmer.stemLine(line, stemmer, words);
+		return new QueryLine(String.join(" ", words), null, words);
+	}
+
+	/**
+	 * Gets the key the results are stored under.
+	 *
+	 * @return the key, empty if there is nothing to search
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Gets the structured query.
+	 *
+	 * @return the query, or null for a bag of words
+	 */
+	public Query getQuery() {
+		return query;
+	}
+
+	/**
+	 * Gets the stemmed words.
+	 *
+	 * @return the words, empty for a structured query
+	 */
+	public TreeSet<String> getWords() {
+		return words;
+	}
+}
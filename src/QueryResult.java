@@ -0,0 +1,89 @@
+import java.util.List;
+
+/**
+ * The Class QueryResult stores the results of one query, as delivered by a
+ * {@link SearchProcessor}.
+ */
+public class QueryResult {
+
+	/** The key of the query. */
+	private final String query;
+
+	/** Whether whole words were matched instead of prefixes. */
+	private final boolean exact;
+
+	/** The sorted results. */
+	private final List<SearchResult> results;
+
+	/** Whether the search stopped early because it exceeded its budget. */
+	private final boolean partial;
+
+	/**
+	 * Instantiates a new query result.
+	 *
+	 * @param query   the key of the query
+	 * @param exact   whether whole words were matched instead of prefixes
+	 * @param results the sorted results
+	 */
+	public QueryResult(String query, boolean exact, List<SearchResult> results) {
+		this(query, exact, results, false);
+	}
+
+	/**
+	 * Instantiates a new query result, possibly from a search that stopped early.
+	 *
+	 * @param query   the key of the query
+	 * @param exact   whether whole words were matched instead of prefixes
+	 * @param results the sorted results
+	 * @param partial whether the search stopped early
+	 */
+	public QueryResult(String query, boolean exact, List<SearchResult> results, boolean partial) {
+		this.query = query;
+		this.exact = exact;
+		this.results = results;
+		this.partial = partial;
+	}
+
+	/**
+	 * Gets the key of the query, the same key the results are written under by
+	 * the search builders.
+	 *
+	 * @return the query
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Checks whether whole words were matched instead of prefixes.
+	 *
+	 * @return true for an exact search
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * Gets the sorted results.
+	 *
+	 * @return the results
+	 */
+	public List<SearchResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * Checks whether the search stopped early because its budget was exceeded, in
+	 * which case the results are the best of the matches found before stopping.
+	 *
+	 * @return true if the results are partial
+	 */
+	public boolean isPartial() {
+		return partial;
+	}
+
+	@Override
+	public String toString() {
+		return query + ": " + results.size() + " results";
+	}
+}
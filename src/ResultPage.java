@@ -0,0 +1,133 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * The Class ResultPage stores one page of search results along with the cursor
+ * of the next page. A cursor is an opaque string encoding the score, count and
+ * location of the last result of a page, so the next page can be computed
+ * without keeping any results between requests.
+ */
+public class ResultPage {
+
+	/** The results of this page, sorted. */
+	private final List<SearchResult> results;
+
+	/** The cursor of the next page, or null if this is the last page. */
+	private final String next;
+
+	/** The number of matching locations. */
+	private final int totalHits;
+
+	/** Whether the total is only a lower bound. */
+	private final boolean lowerBound;
+
+	/** Whether the search stopped early. */
+	private final boolean partial;
+
+	/**
+	 * Instantiates a new page from the best results after the previous cursor. At
+	 * most one result more than the page size should be given, to tell whether
+	 * there is a next page.
+	 *
+	 * @param top  the best results after the previous cursor
+	 * @param size the number of results per page
+	 */
+	public ResultPage(TopResults top, int size) {
+		List<SearchResult> found = top.getResults();
+		if (found.size() > size) {
+			this.results = found.subList(0, size);
+			this.next = encode(found.get(size - 1));
+		} else {
+			this.results = found;
+			this.next = null;
+		}
+		this.totalHits = top.getTotalHits();
+		this.lowerBound = top.isTotalHitsLowerBound();
+		this.partial = top.isPartial();
+	}
+
+	/**
+	 * Gets the results of this page, sorted.
+	 *
+	 * @return the results
+	 */
+	public List<SearchResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * Gets the cursor of the next page.
+	 *
+	 * @return the cursor, or null if this is the last page
+	 */
+	public String getNext() {
+		return next;
+	}
+
+	/**
+	 * Gets the total number of matching locations over every page. Pages ranked
+	 * with {@link WandSearch} only count the locations that were scored, see
+	 * {@link #isTotalHitsLowerBound()}.
+	 *
+	 * @return the total hits
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * Checks whether the total hits are only a lower bound, because some matching
+	 * locations were skipped without being counted.
+	 *
+	 * @return true if there may be more matches than the total hits
+	 */
+	public boolean isTotalHitsLowerBound() {
+		return lowerBound;
+	}
+
+	/**
+	 * Checks whether the search stopped early because its budget was exceeded, in
+	 * which case the page holds the best of the matches found before stopping.
+	 *
+	 * @return true if the page is partial
+	 */
+	public boolean isPartial() {
+		return partial;
+	}
+
+	/**
+	 * Encodes a result as a cursor.
+	 *
+	 * @param result the last result of a page
+	 * @return the cursor
+	 */
+	public static String encode(SearchResult result) {
+		String fields = Long.toHexString(Double.doubleToLongBits(result.getScore())) + ":" + result.getCount() + ":"
+				+ result.getLocations();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(fields.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a cursor back into the result it was encoded from, with only its
+	 * score, count and location set.
+	 *
+	 * @param cursor the cursor, or null
+	 * @return the result, or null if the cursor is null
+	 * @throws IllegalArgumentException if the cursor is invalid
+	 */
+	public static SearchResult decode(String cursor) {
+		if (cursor == null) {
+			return null;
+		}
+		try {
+			String fields = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			String[] parts = fields.split(":", 3);
+			double score = Double.longBitsToDouble(Long.parseUnsignedLong(parts[0], 16));
+			int count = Integer.parseInt(parts[1]);
+			return new SearchResult(parts[2], count, 0, score);
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+		}
+	}
+}
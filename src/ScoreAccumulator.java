@@ -0,0 +1,157 @@
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The Class ScoreAccumulator adds up match counts and scores per location id in
+ * dense arrays, remembering which locations were touched so that it can be
+ * cleared and reused by a later search without reallocating. Accumulators are
+ * shared through a small bounded pool rather than kept per thread, since
+ * server requests each run on a new virtual thread.
+ */
+public class ScoreAccumulator {
+
+	/** The number of idle accumulators kept for reuse. */
+	public static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	/** The idle accumulators. */
+	private static final BlockingQueue<ScoreAccumulator> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	/** The match count of each location id. */
+	private int[] counts;
+
+	/** The score of each location id. */
+	private double[] scores;
+
+	/** The location ids touched since the last clear, in the order touched. */
+	private int[] touched;
+
+	/** The number of locations touched. */
+	private int size;
+
+	/**
+	 * Instantiates a new, empty accumulator.
+	 */
+	public ScoreAccumulator() {
+		this.counts = new int[0];
+		this.scores = new double[0];
+		this.touched = new int[0];
+		this.size = 0;
+	}
+
+	/**
+	 * Takes an idle accumulator from the pool, or creates one if the pool is
+	 * empty, large enough for the given number of locations. It should be given
+	 * back with {@link #release(ScoreAccumulator)} once the search is done.
+	 *
+	 * @param documents the number of locations
+	 * @return the cleared accumulator
+	 */
+	public static ScoreAccumulator acquire(int documents) {
+		ScoreAccumulator accumulator = POOL.poll();
+		if (accumulator == null) {
+			accumulator = new ScoreAccumulator();
+		}
+		accumulator.ensureCapacity(documents);
+		return accumulator;
+	}
+
+	/**
+	 * Clears an accumulator and returns it to the pool, or drops it if the pool
+	 * is full. The accumulator must not be used afterwards.
+	 *
+	 * @param accumulator the accumulator
+	 */
+	public static void release(ScoreAccumulator accumulator) {
+		accumulator.clear();
+		POOL.offer(accumulator);
+	}
+
+	/**
+	 * Grows the arrays to hold at least the given number of locations.
+	 *
+	 * @param documents the number of locations
+	 */
+	public void ensureCapacity(int documents) {
+		if (counts.length < documents) {
+			counts = Arrays.copyOf(counts, documents);
+			scores = Arrays.copyOf(scores, documents);
+			touched = Arrays.copyOf(touched, documents);
+		}
+	}
+
+	/**
+	 * Adds matches to a location.
+	 *
+	 * @param document the location id
+	 * @param count    the number of matches, at least one
+	 */
+	public void add(int document, int count) {
+		if (counts[document] == 0) {
+			touched[size++] = document;
+		}
+		counts[document] += count;
+	}
+
+	/**
+	 * Adds matches and a score to a location.
+	 *
+	 * @param document the location id
+	 * @param count    the number of matches, at least one
+	 * @param score    the score
+	 */
+	public void add(int document, int count, double score) {
+		add(document, count);
+		scores[document] += score;
+	}
+
+	/**
+	 * Gets the number of locations touched.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the id of the i-th location touched.
+	 *
+	 * @param i the index
+	 * @return the location id
+	 */
+	public int document(int i) {
+		return touched[i];
+	}
+
+	/**
+	 * Gets the match count of a location.
+	 *
+	 * @param document the location id
+	 * @return the count
+	 */
+	public int count(int document) {
+		return counts[document];
+	}
+
+	/**
+	 * Gets the score of a location.
+	 *
+	 * @param document the location id
+	 * @return the score
+	 */
+	public double score(int document) {
+		return scores[document];
+	}
+
+	/**
+	 * Resets every touched location, in time proportional to their number.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			counts[touched[i]] = 0;
+			scores[touched[i]] = 0;
+		}
+		size = 0;
+	}
+}
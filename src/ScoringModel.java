@@ -0,0 +1,60 @@
+/**
+ * The Interface ScoringModel scores how well a location matches a query word
+ * using the collection statistics precomputed in an {@link IndexSnapshot}. The
+ * score of a location is the sum of the scores of every query word it contains.
+ */
+public interface ScoringModel {
+
+	/**
+	 * Computes the weight of a word, which is the same for every location and is
+	 * computed once per query word.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param term     the word id
+	 * @return the weight of the word
+	 */
+	public double weight(IndexSnapshot snapshot, int term);
+
+	/**
+	 * Scores one location containing a query word.
+	 *
+	 * @param snapshot  the index snapshot
+	 * @param weight    the weight of the word
+	 * @param frequency the number of times the word appears in the location
+	 * @param document  the location id
+	 * @return the score
+	 */
+	public double score(IndexSnapshot snapshot, double weight, int frequency, int document);
+
+	/**
+	 * Returns the name of a scoring model, which tells apart the results cached
+	 * for different models.
+	 *
+	 * @param model the scoring model, or null to score by ratio of matches
+	 * @return the name of the model, or "ratio" if the model is null
+	 */
+	public static String nameOf(ScoringModel model) {
+		return model == null ? "ratio" : model.toString();
+	}
+
+	/**
+	 * Returns the scoring model with the given name.
+	 *
+	 * @param name the name, either bm25 or tfidf
+	 * @return the scoring model, or null if the name is null
+	 * @throws IllegalArgumentException if the name is not recognized
+	 */
+	public static ScoringModel forName(String name) {
+		if (name == null) {
+			return null;
+		}
+		switch (name.toLowerCase()) {
+		case "bm25":
+			return new BM25Model();
+		case "tfidf":
+			return new TFIDFModel();
+		default:
+			throw new IllegalArgumentException("Unknown scoring model: " + name);
+		}
+	}
+}
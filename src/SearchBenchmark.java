@@ -0,0 +1,329 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The Class SearchBenchmark compares WAND ranked retrieval against scoring every
+ * matching location, over long queries built from random words of an index.
+ * With <code>-wildcards</code> it instead compares expanding wildcard patterns
+ * through the k-gram index against checking every word, with
+ * <code>-fuzzy</code> it compares walking a {@link LevenshteinAutomaton} down
+ * the trie against computing the distance to every word, and with
+ * <code>-json</code> it times writing the results of the queries as pretty and
+ * as compact JSON.
+ *
+ * Usage: <code>java SearchBenchmark -path corpus [-queries 200] [-words 8]
+ * [-top 10] [-scoring bm25] [-wildcards | -fuzzy [-distance 2] | -json
+ * [-rounds 5]]</code>
+ */
+public class SearchBenchmark {
+
+	/**
+	 * Builds an index from the path and runs the benchmark.
+	 *
+	 * @param args the command-line arguments to parse
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void main(String[] args) throws IOException {
+		ArgumentMap parse = new ArgumentMap(args);
+		Path path = parse.getPath("-path");
+		if (path == null) {
+			System.out.println("Usage: SearchBenchmark -path corpus [-queries n] [-words n] [-top k] [-scoring model]");
+			return;
+		}
+
+		InvertedIndex index = new InvertedIndex();
+		InvertedIndexBuilder.traverseDirectory(path, index);
+		IndexSnapshot snapshot = index.snapshot();
+		if (snapshot.terms() == 0) {
+			System.out.println("Nothing indexed at " + path);
+			return;
+		}
+
+		if (parse.hasFlag("-wildcards")) {
+			wildcards(snapshot, parse.getValue("-queries", 200));
+			return;
+		}
+
+		if (parse.hasFlag("-fuzzy")) {
+			fuzzy(snapshot, parse.getValue("-queries", 200),
+					Math.min(parse.getValue("-distance", FuzzyQuery.MAX_DISTANCE), FuzzyQuery.MAX_DISTANCE));
+			return;
+		}
+
+		if (parse.hasFlag("-json")) {
+			json(index, snapshot, parse.getValue("-queries", 200), parse.getValue("-words", 8),
+					parse.getValue("-rounds", 5));
+			return;
+		}
+
+		ScoringModel model = ScoringModel.forName(parse.getString("-scoring", "bm25"));
+		if (model == null) {
+			model = new BM25Model();
+		}
+		int k = parse.getValue("-top", 10);
+		List<TreeSet<String>> queries = randomQueries(snapshot, parse.getValue("-queries", 200),
+				parse.getValue("-words", 8));
+		snapshot.maxScores(model);
+
+		long exhaustiveScored = 0;
+		long start = System.nanoTime();
+		for (TreeSet<String> query : queries) {
+			exhaustive(snapshot, query, model, k);
+			for (String word : query) {
+				exhaustiveScored += snapshot.documentFrequency(snapshot.termId(word));
+			}
+		}
+		long exhaustive = System.nanoTime() - start;
+
+		WandSearch wand = new WandSearch(snapshot, model);
+		long wandScored = 0;
+		long wandVisited = 0;
+		List<TopResults> results = new ArrayList<>();
+		start = System.nanoTime();
+		for (TreeSet<String> query : queries) {
+			results.add(wand.search(query, true, k));
+			wandScored += wand.getScored();
+			wandVisited += wand.getVisited();
+		}
+		long pruned = System.nanoTime() - start;
+
+		int mismatches = 0;
+		for (int i = 0; i < queries.size(); i++) {
+			if (!sameLocations(results.get(i), exhaustive(snapshot, queries.get(i), model, k))) {
+				mismatches++;
+			}
+		}
+
+		System.out.printf("%d queries of %d words, top %d, %s%n", queries.size(), parse.getValue("-words", 8), k,
+				model);
+		System.out.printf("exhaustive: %d postings scored%n", exhaustiveScored);
+		System.out.printf("wand:       %d postings scored, %d visited (%.1f%% scored)%n", wandScored, wandVisited,
+				exhaustiveScored == 0 ? 0 : 100.0 * wandScored / exhaustiveScored);
+		System.out.printf("exhaustive: %.3f ms/query%n", exhaustive / 1e6 / queries.size());
+		System.out.printf("wand:       %.3f ms/query%n", pruned / 1e6 / queries.size());
+		System.out.printf("mismatched queries: %d%n", mismatches);
+	}
+
+	/**
+	 * Times expanding suffix, infix and inner wildcard patterns built from random
+	 * words through the k-gram index and by checking every word.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param count    the number of patterns of each kind
+	 */
+	private static void wildcards(IndexSnapshot snapshot, int count) {
+		Random random = new Random(42);
+		List<String> patterns = new ArrayList<>();
+		while (patterns.size() < count * 3) {
+			String word = snapshot.term(random.nextInt(snapshot.terms()));
+			if (word.length() >= 5) {
+				patterns.add("*" + word.substring(word.length() - 4));
+				patterns.add("*" + word.substring(1, 4) + "*");
+				patterns.add(word.charAt(0) + "*" + word.substring(word.length() - 3));
+			}
+		}
+
+		WildcardIndex wildcards = snapshot.getWildcardIndex();
+		long matched = 0;
+		long start = System.nanoTime();
+		List<int[]> expanded = new ArrayList<>();
+		for (String pattern : patterns) {
+			expanded.add(wildcards.expand(pattern));
+		}
+		long kgrams = System.nanoTime() - start;
+
+		int mismatches = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < patterns.size(); i++) {
+			int[] scanned = WildcardIndex.scan(snapshot.getDictionary(), patterns.get(i));
+			matched += scanned.length;
+			if (!Arrays.equals(scanned, expanded.get(i))) {
+				mismatches++;
+			}
+		}
+		long scan = System.nanoTime() - start;
+
+		System.out.printf("%d patterns over %d words, %d matches%n", patterns.size(), snapshot.terms(), matched);
+		System.out.printf("k-gram: %.3f ms/pattern%n", kgrams / 1e6 / patterns.size());
+		System.out.printf("scan:   %.3f ms/pattern%n", scan / 1e6 / patterns.size());
+		System.out.printf("mismatched patterns: %d%n", mismatches);
+	}
+
+	/**
+	 * Times finding the words within an edit distance of random words of the index
+	 * by intersecting a Levenshtein automaton with the trie, and by computing the
+	 * distance to every word.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param count    the number of words
+	 * @param distance the maximum edit distance
+	 */
+	private static void fuzzy(IndexSnapshot snapshot, int count, int distance) {
+		Random random = new Random(42);
+		List<LevenshteinAutomaton> automata = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			automata.add(new LevenshteinAutomaton(snapshot.term(random.nextInt(snapshot.terms())), distance));
+		}
+
+		TermDictionary dictionary = snapshot.getDictionary();
+		List<int[]> intersected = new ArrayList<>();
+		long start = System.nanoTime();
+		for (LevenshteinAutomaton automaton : automata) {
+			intersected.add(automaton.intersect(dictionary));
+		}
+		long trie = System.nanoTime() - start;
+
+		long matched = 0;
+		int mismatches = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < automata.size(); i++) {
+			int[] scanned = scanFuzzy(snapshot, automata.get(i));
+			matched += scanned.length;
+			if (!Arrays.equals(scanned, intersected.get(i))) {
+				mismatches++;
+			}
+		}
+		long scan = System.nanoTime() - start;
+
+		System.out.printf("%d words within distance %d over %d words, %d matches%n", automata.size(), distance,
+				snapshot.terms(), matched);
+		System.out.printf("automaton: %.3f ms/word%n", trie / 1e6 / automata.size());
+		System.out.printf("scan:      %.3f ms/word%n", scan / 1e6 / automata.size());
+		System.out.printf("mismatched words: %d%n", mismatches);
+	}
+
+	/**
+	 * Returns the ids of the words of the snapshot accepted by the automaton,
+	 * computing the full distance to every word.
+	 *
+	 * @param snapshot  the index snapshot
+	 * @param automaton the automaton
+	 * @return the sorted word ids
+	 */
+	private static int[] scanFuzzy(IndexSnapshot snapshot, LevenshteinAutomaton automaton) {
+		int[] matches = new int[snapshot.terms()];
+		int size = 0;
+		for (int term = 0; term < snapshot.terms(); term++) {
+			String word = snapshot.term(term);
+			int[] state = automaton.start();
+			for (int i = 0; i < word.length(); i++) {
+				state = automaton.step(state, word.charAt(i));
+			}
+			if (automaton.isMatch(state)) {
+				matches[size++] = term;
+			}
+		}
+		return Arrays.copyOf(matches, size);
+	}
+
+	/**
+	 * Times writing the partial search results of random queries to a temporary
+	 * file as pretty and as compact JSON, keeping the fastest of several rounds
+	 * after a warm-up write of each.
+	 *
+	 * @param index    the index
+	 * @param snapshot the index snapshot
+	 * @param count    the number of queries
+	 * @param words    the number of words per query
+	 * @param rounds   the number of timed writes of each kind
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void json(InvertedIndex index, IndexSnapshot snapshot, int count, int words, int rounds)
+			throws IOException {
+		SearchBuilder builder = new SearchBuilder(index);
+		for (TreeSet<String> query : randomQueries(snapshot, count, words)) {
+			builder.queryLine(String.join(" ", query), false);
+		}
+		TreeMap<String, List<SearchResult>> results = builder.getResults();
+		long total = 0;
+		for (List<SearchResult> list : results.values()) {
+			total += list.size();
+		}
+
+		Path output = Files.createTempFile("results", ".json");
+		try {
+			long[] best = new long[2];
+			long[] size = new long[2];
+			for (int mode = 0; mode < 2; mode++) {
+				best[mode] = Long.MAX_VALUE;
+				for (int round = 0; round <= rounds; round++) {
+					long start = System.nanoTime();
+					JSONWriter.asQuery(results, output, mode == 1);
+					long elapsed = System.nanoTime() - start;
+					if (round > 0) {
+						best[mode] = Math.min(best[mode], elapsed);
+					}
+				}
+				size[mode] = Files.size(output);
+			}
+			System.out.printf("%d queries, %d results%n", results.size(), total);
+			System.out.printf("pretty:  %.1f ms, %d bytes%n", best[0] / 1e6, size[0]);
+			System.out.printf("compact: %.1f ms, %d bytes%n", best[1] / 1e6, size[1]);
+		} finally {
+			Files.deleteIfExists(output);
+		}
+	}
+
+	/**
+	 * Builds queries from random words of the index.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param count    the number of queries
+	 * @param words    the number of words per query
+	 * @return the queries
+	 */
+	private static List<TreeSet<String>> randomQueries(IndexSnapshot snapshot, int count, int words) {
+		Random random = new Random(42);
+		List<TreeSet<String>> queries = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			TreeSet<String> query = new TreeSet<>();
+			for (int j = 0; j < words; j++) {
+				query.add(snapshot.term(random.nextInt(snapshot.terms())));
+			}
+			queries.add(query);
+		}
+		return queries;
+	}
+
+	/**
+	 * Scores every location matching the exact query, keeping the best k. The
+	 * unlimited budget keeps the search from going through {@link WandSearch}.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param query    the query words
+	 * @param model    the scoring model
+	 * @param k        the number of results to keep
+	 * @return the best results
+	 */
+	private static TopResults exhaustive(IndexSnapshot snapshot, TreeSet<String> query, ScoringModel model, int k) {
+		return snapshot.searchTerms(snapshot.matchingTerms(query, true), model, k, new SearchBudget(0, 0));
+	}
+
+	/**
+	 * Tests whether two searches returned the same locations in the same order.
+	 *
+	 * @param first  the first results
+	 * @param second the second results
+	 * @return true if the locations match
+	 */
+	private static boolean sameLocations(TopResults first, TopResults second) {
+		List<SearchResult> a = first.getResults();
+		List<SearchResult> b = second.getResults();
+		if (a.size() != b.size()) {
+			return false;
+		}
+		for (int i = 0; i < a.size(); i++) {
+			if (!a.get(i).getLocations().equals(b.get(i).getLocations())) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,78 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Class SearchBudget bounds the work of a single search by a deadline, a
+ * number of postings visited, or both. Searches check the budget between
+ * posting lists, and every {@link IndexSnapshot#BUDGET_INTERVAL} postings within
+ * one, and stop early once it is exceeded, returning the best results found so
+ * far flagged as partial. A budget may be charged from several threads
+ * searching parts of the same query.
+ */
+public class SearchBudget {
+
+	/** The time at which the budget runs out, in {@link System#nanoTime()}. */
+	private final long deadline;
+
+	/** The number of postings that may be visited. */
+	private final long maxPostings;
+
+	/** The number of postings visited so far. */
+	private final AtomicLong visited;
+
+	/** Whether the budget was exceeded. */
+	private volatile boolean exceeded;
+
+	/**
+	 * Instantiates a new budget starting now.
+	 *
+	 * @param millis   the time allowed in milliseconds, or a non-positive number
+	 *                 for no deadline
+	 * @param postings the number of postings that may be visited, or a
+	 *                 non-positive number for no limit
+	 */
+	public SearchBudget(long millis, long postings) {
+		this.deadline = millis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis) : Long.MAX_VALUE;
+		this.maxPostings = postings > 0 ? postings : Long.MAX_VALUE;
+		this.visited = new AtomicLong();
+		this.exceeded = false;
+	}
+
+	/**
+	 * Records postings visited.
+	 *
+	 * @param postings the number of postings visited
+	 */
+	public void charge(long postings) {
+		if (visited.addAndGet(postings) > maxPostings) {
+			exceeded = true;
+		}
+	}
+
+	/**
+	 * Checks whether the budget was exceeded, either by the postings visited or by
+	 * passing the deadline. Once exceeded, a budget stays exceeded.
+	 *
+	 * @return true if the search should stop
+	 */
+	public boolean isExceeded() {
+		if (!exceeded && deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+			exceeded = true;
+		}
+		return exceeded;
+	}
+
+	/**
+	 * Gets the number of postings visited so far.
+	 *
+	 * @return the postings visited
+	 */
+	public long getVisited() {
+		return visited.get();
+	}
+
+	@Override
+	public String toString() {
+		return "visited " + visited.get() + (exceeded ? ", exceeded" : "");
+	}
+}
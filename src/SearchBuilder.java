@@ -1,10 +1,13 @@
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
-import opennlp.tools.stemmer.Stemmer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
@@ -15,17 +18,61 @@ public class SearchBuilder implements SearchBuilderInterface {
 	/** The results. */
 	private final TreeMap<String, List<SearchResult>> results;
 
+	/** The Constant logger. */
+	private static final Logger logger = LogManager.getLogger();
+
 	/** The inverted index. */
 	private final InvertedIndex index;
 
+	/** The cache of previously searched queries. */
+	private final QueryCache cache;
+
+	/** The scoring model, or null to score by ratio of matches. */
+	private final ScoringModel model;
+
+	/** The time allowed per search in milliseconds, or 0 for no deadline. */
+	private long timeout;
+
+	/** The number of postings each search may visit, or 0 for no limit. */
+	private long maxPostings;
+
+	/** Whether query lines are parsed for query syntax. */
+	private boolean operators;
+
+	/** The number of searches that stopped early. */
+	private int truncated;
+
 	/**
 	 * Instantiates a new partial search builder.
 	 */
 	public SearchBuilder(InvertedIndex index) {
+		this(index, new QueryCache());
+	}
+
+	/**
+	 * Instantiates a new partial search builder sharing a query cache.
+	 *
+	 * @param index the index
+	 * @param cache the query cache
+	 */
+	public SearchBuilder(InvertedIndex index, QueryCache cache) {
+		this(index, cache, null);
+	}
+
+	/**
+	 * Instantiates a new partial search builder ranking results with a scoring
+	 * model.
+	 *
+	 * @param index the index
+	 * @param cache the query cache
+	 * @param model the scoring model, or null to score by ratio of matches
+	 */
+	public SearchBuilder(InvertedIndex index, QueryCache cache, ScoringModel model) {
 		super();
 		results = new TreeMap<>();
 		this.index = index;
-
+		this.cache = cache;
+		this.model = model;
 	}
 
 	/**
@@ -36,32 +83,110 @@ public class SearchBuilder implements SearchBuilderInterface {
 	 */
 	@Override
 	public void queryLine(String line, boolean exact) {
+		QueryLine parsed = QueryLine.parse(line, new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH), operators);
+		String joined = parsed.getKey();
+		if (!joined.isEmpty() && !results.containsKey(joined)) {
+			results.put(joined, search(parsed, exact));
+		}
+	}
 
-		Stemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-		TreeSet<String> container = new TreeSet<>();
-		TextFileStemmer.stemLine(line, stemmer, container);
-		String joined = String.join(" ", container);
-
-		if (!container.isEmpty() && !results.containsKey(joined)) {
-			List<SearchResult> searchResults;
-			if (exact) {
-				searchResults = index.exactSearch(container);
-			} else {
-				searchResults = index.partialSearch(container);
+	/**
+	 * Searches a parsed line, through the query cache.
+	 *
+	 * @param parsed the parsed line
+	 * @param exact  the exact boolean for searching
+	 * @return the sorted results
+	 */
+	private List<SearchResult> search(QueryLine parsed, boolean exact) {
+		return search(parsed, exact, true);
+	}
+
+	/**
+	 * Searches a parsed line, answering from the query cache when possible.
+	 *
+	 * @param parsed   the parsed line
+	 * @param exact    the exact boolean for searching
+	 * @param remember whether to add the results to the query cache
+	 * @return the sorted results
+	 */
+	private List<SearchResult> search(QueryLine parsed, boolean exact, boolean remember) {
+		SearchBudget budget = timeout > 0 || maxPostings > 0 ? new SearchBudget(timeout, maxPostings) : null;
+		TopResults top = cache.search(index, parsed, exact, model, budget, remember);
+		if (top.isPartial()) {
+			truncated++;
+			logger.warn("Search for \"{}\" exceeded its budget, results are partial", parsed.getKey());
+		}
+		return top.getResults();
+	}
+
+	/**
+	 * Searches every line of a query file, writing the results of each query as
+	 * soon as it is searched instead of keeping them. The queries are searched in
+	 * the order they are written, and their results are not added to the query
+	 * cache, so only the parsed queries are kept in memory. If a search fails, the
+	 * partially written results file is deleted.
+	 *
+	 * @param root    the query file
+	 * @param exact   the exact boolean for searching
+	 * @param output  the results file
+	 * @param compact whether to write compact output
+	 * @throws IOException if the file cannot be read or written, or a search
+	 *                     fails
+	 */
+	@Override
+	public void queryFile(Path root, boolean exact, Path output, boolean compact) throws IOException {
+		TreeMap<String, QueryLine> queries = SearchBuilderInterface.parseQueryFile(root, operators);
+		boolean written = false;
+		try (BufferedWriter writer = JSONWriter.newWriter(output, compact)) {
+			JSONWriter.startQueries(writer);
+			boolean first = true;
+			for (QueryLine parsed : queries.values()) {
+				JSONWriter.asQueryEntry(parsed.getKey(), search(parsed, exact, false), writer, first);
+				first = false;
+			}
+			JSONWriter.endQueries(writer);
+			written = true;
+		} catch (RuntimeException e) {
+			throw new IOException("Unable to search " + root, e);
+		} finally {
+			if (!written) {
+				// never leave a truncated results file behind
+				Files.deleteIfExists(output);
 			}
-			results.put(joined, searchResults);
 		}
 	}
 
+	@Override
+	public void setBudget(long millis, long postings) {
+		this.timeout = Math.max(0, millis);
+		this.maxPostings = Math.max(0, postings);
+	}
+
+	@Override
+	public void setOperators(boolean operators) {
+		this.operators = operators;
+	}
+
+	@Override
+	public int getTruncated() {
+		return truncated;
+	}
+
 	/**
 	 * As query to JSON format.
 	 *
-	 * @param output the output
+	 * @param output  the output
+	 * @param compact whether to write compact output
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	@Override
-	public void toJSON(Path output) throws IOException {
-		JSONWriter.asQuery(results, output);
+	public void toJSON(Path output, boolean compact) throws IOException {
+		JSONWriter.asQuery(results, output, compact);
+	}
+
+	@Override
+	public TreeMap<String, List<SearchResult>> getResults() {
+		return new TreeMap<>(results);
 	}
 
 }
\ No newline at end of file
@@ -3,6 +3,11 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.TreeMap;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * The Interface SearchBuilderInterface.
@@ -25,6 +30,63 @@ public interface SearchBuilderInterface {
 		}
 	}
 
+	/**
+	 * Searches every line of a query file and writes the results to a file. By
+	 * default the results are kept until every line is searched, but builders may
+	 * write them as they go so that memory stays bounded.
+	 *
+	 * @param root   the query file
+	 * @param exact  the exact boolean for searching
+	 * @param output the results file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public default void queryFile(Path root, boolean exact, Path output) throws IOException {
+		queryFile(root, exact, output, false);
+	}
+
+	/**
+	 * Searches every line of a query file and writes the results to a file as
+	 * JSON, pretty printed or compact, as {@link #queryFile(Path, boolean, Path)}
+	 * does.
+	 *
+	 * @param root    the query file
+	 * @param exact   the exact boolean for searching
+	 * @param output  the results file
+	 * @param compact whether to write compact output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public default void queryFile(Path root, boolean exact, Path output, boolean compact) throws IOException {
+		queryFile(root, exact);
+		toJSON(output, compact);
+	}
+
+	/**
+	 * Parses every line of a query file, keeping one parsed line per key in the
+	 * order their results are written. The whole file is parsed up front and
+	 * every distinct parsed line is held in the returned map, so memory grows
+	 * with the number of distinct queries, though not with their results.
+	 *
+	 * @param root      the query file
+	 * @param operators whether to parse query syntax, see
+	 *                  {@link QueryLine#parse(String, Stemmer, boolean)}
+	 * @return the parsed lines by key
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static TreeMap<String, QueryLine> parseQueryFile(Path root, boolean operators) throws IOException {
+		TreeMap<String, QueryLine> queries = new TreeMap<>();
+		Stemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+		try (BufferedReader reader = Files.newBufferedReader(root, StandardCharsets.UTF_8)) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				QueryLine parsed = QueryLine.parse(line, stemmer, operators);
+				if (!parsed.getKey().isEmpty()) {
+					queries.putIfAbsent(parsed.getKey(), parsed);
+				}
+			}
+		}
+		return queries;
+	}
+
 	/**
 	 * Query line.
 	 *
@@ -33,12 +95,79 @@ public interface SearchBuilderInterface {
 	 */
 	public void queryLine(String line, boolean exact);
 
+	/**
+	 * Bounds the work of each search by a deadline and a number of postings
+	 * visited. Searches exceeding the budget keep the best results found so far,
+	 * count as truncated and are logged as a warning naming the query.
+	 *
+	 * @param millis   the time allowed per search in milliseconds, or a
+	 *                 non-positive number for no deadline
+	 * @param postings the number of postings each search may visit, or a
+	 *                 non-positive number for no limit
+	 */
+	public void setBudget(long millis, long postings);
+
+	/**
+	 * Sets whether query lines are parsed for phrases, boolean operators,
+	 * wildcards and fuzzy words, instead of being searched as plain words. Off by
+	 * default, so existing query files keep their results and keys.
+	 *
+	 * @param operators whether to parse query syntax
+	 */
+	public void setOperators(boolean operators);
+
+	/**
+	 * Gets the number of searches that stopped early because they exceeded their
+	 * budget.
+	 *
+	 * @return the number of truncated searches
+	 */
+	public int getTruncated();
+
 	/**
 	 * To JSON format.
 	 *
 	 * @param output the output
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	public void toJSON(Path output) throws IOException;
+	public default void toJSON(Path output) throws IOException {
+		toJSON(output, false);
+	}
+
+	/**
+	 * To JSON format, pretty printed or compact.
+	 *
+	 * @param output  the output
+	 * @param compact whether to write compact output
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void toJSON(Path output, boolean compact) throws IOException;
+
+	/**
+	 * Gets the results of every query searched so far.
+	 *
+	 * @return the sorted results by query
+	 */
+	public TreeMap<String, List<SearchResult>> getResults();
+
+	/**
+	 * Writes the results in the given format.
+	 *
+	 * @param output the output
+	 * @param format the format
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public default void toFormat(Path output, OutputFormat format) throws IOException {
+		switch (format) {
+		case COLUMNAR:
+			ColumnarWriter.asQuery(getResults(), output);
+			break;
+		case CBOR:
+			CBORWriter.asQuery(getResults(), output);
+			break;
+		default:
+			toJSON(output, format == OutputFormat.COMPACT_JSON);
+		}
+	}
 
 }
@@ -0,0 +1,239 @@
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * The Class SearchProcessor searches a stream of query lines and publishes the
+ * results of each query, using the {@link java.util.concurrent.Flow} API.
+ * Demand flows upstream one line at a time: the next line is only requested once
+ * the results of the previous one were accepted by every subscriber. Each line
+ * is searched and published on a separate executor rather than in
+ * {@link #onNext(String)}, so publishing may block while a subscriber's buffer
+ * is full without blocking the publisher of lines. A slow subscriber thus slows
+ * down the searches and the lines requested instead of queueing results
+ * without bound. Blank lines are skipped.
+ */
+public class SearchProcessor extends SubmissionPublisher<QueryResult>
+		implements Flow.Processor<String, QueryResult> {
+
+	/** The Constant logger. */
+	private static final Logger logger = LogManager.getLogger();
+
+	/** The index. */
+	private final InvertedIndex index;
+
+	/** Whether to match whole words instead of prefixes. */
+	private final boolean exact;
+
+	/** The scoring model, or null to score by ratio of matches. */
+	private final ScoringModel model;
+
+	/** The cache of previously searched queries. */
+	private final QueryCache cache;
+
+	/** Whether query lines are parsed for query syntax. */
+	private volatile boolean operators;
+
+	/** The executor searching lines, apart from the one delivering results. */
+	private final Executor searcher;
+
+	/** The stemmer, only used by one search at a time. */
+	private final Stemmer stemmer;
+
+	/** The time allowed per search in milliseconds, or 0 for no deadline. */
+	private volatile long timeout;
+
+	/** The number of postings each search may visit, or 0 for no limit. */
+	private volatile long maxPostings;
+
+	/** The number of searches that stopped early. */
+	private final AtomicInteger truncated;
+
+	/** The subscription to the lines. */
+	private Flow.Subscription subscription;
+
+	/** Whether a line is being searched. */
+	private boolean searching;
+
+	/** Whether the lines completed while a line was being searched. */
+	private boolean completed;
+
+	/**
+	 * Instantiates a new search processor publishing on the common pool, or on a
+	 * new thread per task if the common pool has a single thread.
+	 *
+	 * @param index the index
+	 * @param exact whether to match whole words instead of prefixes
+	 * @param model the scoring model, or null to score by ratio of matches
+	 */
+	public SearchProcessor(InvertedIndex index, boolean exact, ScoringModel model) {
+		this(index, exact, model, new QueryCache(), defaultExecutor(), Flow.defaultBufferSize());
+	}
+
+	/**
+	 * Instantiates a new search processor searching lines on the common pool, or
+	 * on a new thread per line if the common pool has a single thread.
+	 *
+	 * @param index    the index
+	 * @param exact    whether to match whole words instead of prefixes
+	 * @param model    the scoring model, or null to score by ratio of matches
+	 * @param cache    the query cache
+	 * @param executor the executor delivering results to subscribers
+	 * @param buffer   the number of results buffered per subscriber
+	 */
+	public SearchProcessor(InvertedIndex index, boolean exact, ScoringModel model, QueryCache cache,
+			Executor executor, int buffer) {
+		this(index, exact, model, cache, executor, buffer, defaultExecutor());
+	}
+
+	/**
+	 * Instantiates a new search processor. Searching a line may block while a
+	 * subscriber's buffer is full, so the searcher must not be the only thread of
+	 * the executor delivering results.
+	 *
+	 * @param index    the index
+	 * @param exact    whether to match whole words instead of prefixes
+	 * @param model    the scoring model, or null to score by ratio of matches
+	 * @param cache    the query cache
+	 * @param executor the executor delivering results to subscribers
+	 * @param buffer   the number of results buffered per subscriber
+	 * @param searcher the executor searching lines
+	 */
+	public SearchProcessor(InvertedIndex index, boolean exact, ScoringModel model, QueryCache cache,
+			Executor executor, int buffer, Executor searcher) {
+		super(executor, buffer);
+		this.searcher = searcher;
+		this.index = index;
+		this.exact = exact;
+		this.model = model;
+		this.cache = cache;
+		this.stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+		this.truncated = new AtomicInteger();
+	}
+
+	/**
+	 * Returns the common pool, or an executor starting a new thread per task if
+	 * the common pool has a single thread.
+	 *
+	 * @return the executor
+	 */
+	private static Executor defaultExecutor() {
+		return ForkJoinPool.getCommonPoolParallelism() > 1 ? ForkJoinPool.commonPool()
+				: task -> new Thread(task).start();
+	}
+
+	/**
+	 * Sets whether query lines are parsed for query syntax, see
+	 * {@link QueryLine#parse(String, Stemmer, boolean)}.
+	 *
+	 * @param operators whether to parse query syntax
+	 */
+	public void setOperators(boolean operators) {
+		this.operators = operators;
+	}
+
+	/**
+	 * Bounds the work of each search by a deadline and a number of postings
+	 * visited. Searches exceeding the budget publish the best results found so
+	 * far flagged as partial, and count as truncated.
+	 *
+	 * @param millis   the time allowed per search in milliseconds, or a
+	 *                 non-positive number for no deadline
+	 * @param postings the number of postings each search may visit, or a
+	 *                 non-positive number for no limit
+	 */
+	public void setBudget(long millis, long postings) {
+		this.timeout = Math.max(0, millis);
+		this.maxPostings = Math.max(0, postings);
+	}
+
+	/**
+	 * Gets the number of searches that stopped early because they exceeded their
+	 * budget.
+	 *
+	 * @return the number of truncated searches
+	 */
+	public int getTruncated() {
+		return truncated.get();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		if (this.subscription != null) {
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		subscription.request(1);
+	}
+
+	@Override
+	public void onNext(String line) {
+		synchronized (this) {
+			searching = true;
+		}
+		searcher.execute(() -> process(line));
+	}
+
+	/**
+	 * Searches a line and publishes its results, then requests the next line, or
+	 * closes if the lines completed meanwhile.
+	 *
+	 * @param line the line
+	 */
+	private void process(String line) {
+		try {
+			QueryLine parsed = QueryLine.parse(line, stemmer, operators);
+			if (!parsed.getKey().isEmpty()) {
+				SearchBudget budget = timeout > 0 || maxPostings > 0 ? new SearchBudget(timeout, maxPostings)
+						: null;
+				TopResults top = cache.search(index, parsed, exact, model, budget, true);
+				if (top.isPartial()) {
+					truncated.incrementAndGet();
+					logger.warn("Search for \"{}\" exceeded its budget, results are partial", parsed.getKey());
+				}
+				submit(new QueryResult(parsed.getKey(), exact, top.getResults(), top.isPartial()));
+			}
+		} catch (RuntimeException e) {
+			subscription.cancel();
+			closeExceptionally(e);
+			return;
+		}
+		boolean done;
+		synchronized (this) {
+			searching = false;
+			done = completed;
+		}
+		if (done) {
+			close();
+		} else {
+			subscription.request(1);
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		closeExceptionally(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		synchronized (this) {
+			if (searching) {
+				// close once the line being searched is published
+				completed = true;
+				return;
+			}
+		}
+		close();
+	}
+}
@@ -31,6 +31,23 @@ public class SearchResult implements Comparable<SearchResult> {
 		this.score = (double) count / total; // score
 	}
 
+	/**
+	 * Instantiates a new search result scored by a {@link ScoringModel} rather
+	 * than by the ratio of matches to total words.
+	 *
+	 * @param locations the locations
+	 * @param count     the count
+	 * @param total     the total
+	 * @param score     the score
+	 */
+	public SearchResult(String locations, int count, int total, double score) {
+		super();
+		this.locations = locations;
+		this.count = count;
+		this.total = total;
+		this.score = score;
+	}
+
 	/**
 	 * Gets the count which is the total matches.
 	 *
@@ -78,7 +95,8 @@ public class SearchResult implements Comparable<SearchResult> {
 			if (this.count != o.getCount()) {
 				return Integer.compare(o.count, this.count);
 			} else {
-				return this.locations.compareToIgnoreCase(o.locations);
+				int compare = this.locations.compareToIgnoreCase(o.locations);
+				return compare != 0 ? compare : this.locations.compareTo(o.locations);
 			}
 		}
 	}
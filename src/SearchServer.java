@@ -0,0 +1,612 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * The Class SearchServer serves searches over an index with the HTTP server
+ * built into the JDK, answering every request with compact JSON. Each request
+ * is handled on its own virtual thread when the JVM supports them, or on a
+ * cached thread pool otherwise. Responses always carry their length, so
+ * clients may keep connections alive between requests. The endpoints are:
+ * <ul>
+ * <li>{@code /search?q=...} for one page of results, with the optional
+ * parameters {@code exact=true} for an exact instead of a partial search,
+ * {@code scoring=bm25} or {@code tfidf}, {@code size} results per page, the
+ * {@code cursor} of the next page returned by the previous one, and a scope of
+ * locations {@code under} a path or matching a {@code glob}. Results include a
+ * highlighted snippet when the index records word offsets, unless
+ * {@code snippets=false}. With {@code operators=true}, or by default if the
+ * server was set to, queries are parsed for phrases, boolean operators,
+ * wildcards and fuzzy words. Repeated searches and pages are answered from a
+ * {@link QueryCache} until the index changes. Ranked pages may skip locations
+ * that cannot make the page, in which case {@code totalHitsIsLowerBound} is
+ * true. Searches exceeding the budget set with {@link #setBudget(long, long)}
+ * answer with the best results found so far and {@code partial} set to
+ * true.</li>
+ * <li>{@code /autocomplete?q=...&n=...} for the completions of the last word
+ * typed.</li>
+ * <li>{@code /stats} for the size of the index and the hits of the query
+ * cache.</li>
+ * </ul>
+ * Malformed parameters, such as an unknown scoring model, are answered with
+ * status 400 and an error message, and searches turned away by the
+ * {@link AdmissionController} with status 503.
+ */
+public class SearchServer {
+
+	/** The default number of results per page. */
+	public static final int DEFAULT_SIZE = 10;
+
+	/** The largest number of results per page. */
+	public static final int MAX_SIZE = 100;
+
+	/** The Constant logger. */
+	private static final Logger logger = LogManager.getLogger();
+
+	/** The idle stemmers, reused across requests. */
+	private final BlockingQueue<Stemmer> stemmers = new ArrayBlockingQueue<>(ScoreAccumulator.POOL_SIZE);
+
+	/** The index. */
+	private final ThreadSafeInvertedIndex index;
+
+	/** The scoring model used when a request does not name one, or null. */
+	private final ScoringModel model;
+
+	/** The snippet generator. */
+	private final SnippetGenerator snippets;
+
+	/** The HTTP server. */
+	private final HttpServer server;
+
+	/** The executor handling the requests. */
+	private final ExecutorService executor;
+
+	/** The admission controller of searches, or null to admit every search. */
+	private final AdmissionController admission;
+
+	/** The cache of results and pages. */
+	private final QueryCache cache;
+
+	/** Whether queries are parsed for query syntax unless a request says. */
+	private volatile boolean operators;
+
+	/** The time allowed per search in milliseconds, or 0 for no deadline. */
+	private volatile long timeout;
+
+	/** The number of postings each search may visit, or 0 for no limit. */
+	private volatile long maxPostings;
+
+	/**
+	 * An endpoint answering the parameters of a request with a JSON body.
+	 */
+	private interface Endpoint {
+
+		/**
+		 * Answers a request.
+		 *
+		 * @param parameters the decoded query parameters
+		 * @return the JSON body
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		String respond(Map<String, String> parameters) throws IOException;
+	}
+
+	/**
+	 * Instantiates a new search server admitting every search, which is not
+	 * started yet.
+	 *
+	 * @param index the index
+	 * @param port  the port, or 0 for any free port
+	 * @param model the scoring model used when a request does not name one, or
+	 *              null to score by ratio of matches
+	 * @throws IOException if the port cannot be bound
+	 */
+	public SearchServer(ThreadSafeInvertedIndex index, int port, ScoringModel model) throws IOException {
+		this(index, port, model, null);
+	}
+
+	/**
+	 * Instantiates a new search server, which is not started yet. Searches the
+	 * admission controller rejects are answered with status 503.
+	 *
+	 * @param index     the index
+	 * @param port      the port, or 0 for any free port
+	 * @param model     the scoring model used when a request does not name one,
+	 *                  or null to score by ratio of matches
+	 * @param admission the admission controller of searches, or null to admit
+	 *                  every search
+	 * @throws IOException if the port cannot be bound
+	 */
+	public SearchServer(ThreadSafeInvertedIndex index, int port, ScoringModel model, AdmissionController admission)
+			throws IOException {
+		this(index, port, model, admission, new QueryCache());
+	}
+
+	/**
+	 * Instantiates a new search server sharing a query cache, which is not
+	 * started yet. Repeated searches and pages are answered from the cache until
+	 * the index changes.
+	 *
+	 * @param index     the index
+	 * @param port      the port, or 0 for any free port
+	 * @param model     the scoring model used when a request does not name one,
+	 *                  or null to score by ratio of matches
+	 * @param admission the admission controller of searches, or null to admit
+	 *                  every search
+	 * @param cache     the query cache
+	 * @throws IOException if the port cannot be bound
+	 */
+	public SearchServer(ThreadSafeInvertedIndex index, int port, ScoringModel model, AdmissionController admission,
+			QueryCache cache) throws IOException {
+		this.index = index;
+		this.model = model;
+		this.admission = admission;
+		this.cache = cache;
+		this.snippets = new SnippetGenerator(index);
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.executor = newExecutor();
+		server.setExecutor(executor);
+		server.createContext("/search", exchange -> handle(exchange, this::search));
+		server.createContext("/autocomplete", exchange -> handle(exchange, this::autocomplete));
+		server.createContext("/stats", exchange -> handle(exchange, this::stats));
+	}
+
+	/**
+	 * Creates an executor starting a virtual thread per task, looked up by
+	 * reflection so the server also runs on JVMs without virtual threads, where
+	 * a cached thread pool is used instead.
+	 *
+	 * @return the executor
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			logger.debug("Virtual threads unavailable, using a thread pool");
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Sets whether queries are parsed for phrases, boolean operators, wildcards
+	 * and fuzzy words when a request does not say, see
+	 * {@link QueryLine#parse(String, Stemmer, boolean)}.
+	 *
+	 * @param operators whether to parse query syntax by default
+	 */
+	public void setOperators(boolean operators) {
+		this.operators = operators;
+	}
+
+	/**
+	 * Bounds the work of each search by a deadline and a number of postings
+	 * visited. Searches exceeding the budget answer with the best results found
+	 * so far, flagged as {@code partial}, and are not cached.
+	 *
+	 * @param millis   the time allowed per search in milliseconds, or a
+	 *                 non-positive number for no deadline
+	 * @param postings the number of postings each search may visit, or a
+	 *                 non-positive number for no limit
+	 */
+	public void setBudget(long millis, long postings) {
+		this.timeout = Math.max(0, millis);
+		this.maxPostings = Math.max(0, postings);
+	}
+
+	/**
+	 * Starts answering requests.
+	 */
+	public void start() {
+		server.start();
+		logger.info("Serving searches on port {}", getPort());
+	}
+
+	/**
+	 * Stops answering requests, waiting for the requests being answered.
+	 *
+	 * @param delay the longest time to wait in seconds
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/**
+	 * Gets the port the server listens on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Answers a request with an endpoint, or with an error.
+	 *
+	 * @param exchange the exchange
+	 * @param endpoint the endpoint
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				exchange.getResponseHeaders().set("Allow", "GET");
+				send(exchange, 405, error("Only GET is supported"));
+				return;
+			}
+			String body;
+			try {
+				body = endpoint.respond(parameters(exchange.getRequestURI().getRawQuery()));
+			} catch (IllegalArgumentException e) {
+				send(exchange, 400, error(e.getMessage()));
+				return;
+			} catch (RejectedExecutionException e) {
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				send(exchange, 503, error(e.getMessage()));
+				return;
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Unable to answer {}", exchange.getRequestURI(), e);
+				send(exchange, 500, error("Internal error"));
+				return;
+			}
+			send(exchange, 200, body);
+		}
+	}
+
+	/**
+	 * Sends a JSON response.
+	 *
+	 * @param exchange the exchange
+	 * @param status   the status code
+	 * @param body     the JSON body
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Answers a search.
+	 *
+	 * @param parameters the parameters
+	 * @return the JSON body
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private String search(Map<String, String> parameters) throws IOException {
+		String text = parameters.getOrDefault("q", "");
+		boolean exact = Boolean.parseBoolean(parameters.get("exact"));
+		ScoringModel scoring = parameters.containsKey("scoring") ? ScoringModel.forName(parameters.get("scoring"))
+				: model;
+		int size = integer(parameters, "size", DEFAULT_SIZE, 1, MAX_SIZE);
+		String cursor = parameters.get("cursor");
+		LocationFilter filter = null;
+		if (parameters.containsKey("under")) {
+			filter = LocationFilter.under(parameters.get("under"));
+		} else if (parameters.containsKey("glob")) {
+			filter = LocationFilter.glob(parameters.get("glob"));
+		}
+
+		boolean syntax = parameters.containsKey("operators") ? Boolean.parseBoolean(parameters.get("operators"))
+				: operators;
+		QueryLine parsed = parse(text, syntax);
+		if (parsed.getQuery() != null && (cursor != null || filter != null)) {
+			throw new IllegalArgumentException("Structured queries do not support cursors or scopes");
+		}
+		AdmissionController.Permit permit = admit(exact);
+		try {
+			return search(parsed, exact, scoring, size, cursor, filter, !"false".equals(parameters.get("snippets")));
+		} finally {
+			if (permit != null) {
+				permit.close();
+			}
+		}
+	}
+
+	/**
+	 * Parses a query with an idle stemmer from the pool, or a new one if every
+	 * pooled stemmer is in use.
+	 *
+	 * @param text      the query text
+	 * @param operators whether to parse query syntax
+	 * @return the parsed query
+	 */
+	private QueryLine parse(String text, boolean operators) {
+		Stemmer stemmer = stemmers.poll();
+		if (stemmer == null) {
+			stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+		}
+		try {
+			return QueryLine.parse(text, stemmer, operators);
+		} finally {
+			stemmers.offer(stemmer);
+		}
+	}
+
+	/**
+	 * Admits a search.
+	 *
+	 * @param exact whether the search is exact
+	 * @return the permit, or null if there is no admission controller
+	 * @throws RejectedExecutionException if the search is rejected
+	 */
+	private AdmissionController.Permit admit(boolean exact) {
+		if (admission == null) {
+			return null;
+		}
+		AdmissionController.Permit permit;
+		try {
+			permit = admission.admit(exact ? AdmissionController.Lane.EXACT : AdmissionController.Lane.PARTIAL);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting");
+		}
+		if (permit == null) {
+			throw new RejectedExecutionException("Too many searches, try again later");
+		}
+		return permit;
+	}
+
+	/**
+	 * Runs an admitted search.
+	 *
+	 * @param parsed   the parsed query
+	 * @param exact    whether to match whole words instead of prefixes
+	 * @param scoring  the scoring model, or null
+	 * @param size     the number of results per page
+	 * @param cursor   the cursor of the page, or null
+	 * @param filter   the location filter, or null
+	 * @param snippets whether to include snippets if offsets are recorded
+	 * @return the JSON body
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private String search(QueryLine parsed, boolean exact, ScoringModel scoring, int size, String cursor,
+			LocationFilter filter, boolean snippets) throws IOException {
+		List<SearchResult> results;
+		String next = null;
+		int totalHits;
+		boolean lowerBound = false;
+		boolean partial = false;
+		long generation = index.getGeneration();
+		SearchBudget budget = timeout > 0 || maxPostings > 0 ? new SearchBudget(timeout, maxPostings) : null;
+		if (parsed.getQuery() != null) {
+			TopResults top = cache.search(index, parsed, exact, scoring, budget, true);
+			results = top.getResults();
+			partial = top.isPartial();
+			totalHits = results.size();
+			lowerBound = partial;
+			results = results.subList(0, Math.min(size, results.size()));
+		} else {
+			String description = size + " " + (cursor == null ? "" : cursor) + (filter == null ? "" : " " + filter);
+			ResultPage page = cache.getPage(parsed.getKey(), exact, scoring, description, generation);
+			if (page == null) {
+				page = index.searchPage(parsed.getWords(), exact, scoring, size, cursor, filter, budget);
+				if (!page.isPartial()) {
+					cache.putPage(parsed.getKey(), exact, scoring, description, generation, page);
+				}
+			}
+			results = page.getResults();
+			next = page.getNext();
+			totalHits = page.getTotalHits();
+			lowerBound = page.isTotalHitsLowerBound();
+			partial = page.isPartial();
+		}
+		if (partial) {
+			logger.warn("Search for \"{}\" exceeded its budget, results are partial", parsed.getKey());
+		}
+		boolean highlight = snippets && index.isRecordingOffsets() && parsed.getQuery() == null;
+
+		StringBuilder out = new StringBuilder();
+		out.append("{\"query\":");
+		appendString(parsed.getKey(), out);
+		out.append(",\"exact\":").append(exact);
+		out.append(",\"partial\":").append(partial);
+		out.append(",\"totalHits\":").append(totalHits);
+		out.append(",\"totalHitsIsLowerBound\":").append(lowerBound);
+		out.append(",\"next\":");
+		if (next == null) {
+			out.append("null");
+		} else {
+			appendString(next, out);
+		}
+		out.append(",\"results\":[");
+		for (int i = 0; i < results.size(); i++) {
+			SearchResult result = results.get(i);
+			if (i > 0) {
+				out.append(',');
+			}
+			out.append("{\"where\":");
+			appendString(result.getLocations(), out);
+			out.append(",\"count\":").append(result.getCount());
+			out.append(",\"score\":");
+			JSONWriter.appendScore(result.getScore(), out);
+			if (highlight) {
+				String snippet = this.snippets.snippet(result.getLocations(), parsed.getWords(), exact);
+				if (snippet != null) {
+					out.append(",\"snippet\":");
+					appendString(snippet, out);
+				}
+			}
+			out.append('}');
+		}
+		out.append("]}");
+		return out.toString();
+	}
+
+	/**
+	 * Answers the completions of the last word typed.
+	 *
+	 * @param parameters the parameters
+	 * @return the JSON body
+	 */
+	private String autocomplete(Map<String, String> parameters) {
+		int n = integer(parameters, "n", Autocompleter.DEFAULT, 1, MAX_SIZE);
+		List<String> completions = index.autocomplete(parameters.getOrDefault("q", ""), n);
+		StringBuilder out = new StringBuilder();
+		out.append("{\"completions\":[");
+		for (int i = 0; i < completions.size(); i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			appendString(completions.get(i), out);
+		}
+		out.append("]}");
+		return out.toString();
+	}
+
+	/**
+	 * Answers the size of the index.
+	 *
+	 * @param parameters the parameters
+	 * @return the JSON body
+	 */
+	private String stats(Map<String, String> parameters) {
+		IndexSnapshot snapshot = index.snapshot();
+		StringBuilder out = new StringBuilder();
+		out.append("{\"generation\":").append(snapshot.getGeneration());
+		out.append(",\"locations\":").append(snapshot.documents());
+		out.append(",\"words\":").append(snapshot.terms());
+		out.append(",\"averageLength\":");
+		JSONWriter.appendScore(snapshot.getAverageLength(), out);
+		out.append(",\"offsets\":").append(index.isRecordingOffsets());
+		if (admission != null) {
+			out.append(",\"admission\":{\"limit\":").append(admission.getLimit());
+			out.append(",\"running\":").append(admission.getRunning());
+			out.append(",\"waitingExact\":").append(admission.getWaiting(AdmissionController.Lane.EXACT));
+			out.append(",\"waitingPartial\":").append(admission.getWaiting(AdmissionController.Lane.PARTIAL));
+			out.append(",\"rejected\":").append(admission.getRejected());
+			out.append('}');
+		}
+		out.append(",\"cache\":{\"size\":").append(cache.size());
+		out.append(",\"hits\":").append(cache.getHits());
+		out.append(",\"misses\":").append(cache.getMisses());
+		out.append(",\"hitRate\":");
+		JSONWriter.appendScore(cache.getHitRate(), out);
+		out.append("}}");
+		return out.toString();
+	}
+
+	/**
+	 * Decodes the parameters of a query string. A parameter given several times
+	 * keeps its first value.
+	 *
+	 * @param query the raw query string, or null
+	 * @return the parameters
+	 */
+	private static Map<String, String> parameters(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null || query.isEmpty()) {
+			return parameters;
+		}
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+			parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+					URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Reads an integer parameter.
+	 *
+	 * @param parameters the parameters
+	 * @param name       the name of the parameter
+	 * @param value      the value if the parameter is missing
+	 * @param min        the smallest value allowed
+	 * @param max        the largest value allowed
+	 * @return the value
+	 * @throws IllegalArgumentException if the value is not an integer in range
+	 */
+	private static int integer(Map<String, String> parameters, String name, int value, int min, int max) {
+		String text = parameters.get(name);
+		if (text == null) {
+			return value;
+		}
+		try {
+			value = Integer.parseInt(text);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name + ": " + text);
+		}
+		if (value < min || value > max) {
+			throw new IllegalArgumentException(name + " must be between " + min + " and " + max);
+		}
+		return value;
+	}
+
+	/**
+	 * Creates the JSON body of an error.
+	 *
+	 * @param message the message
+	 * @return the JSON body
+	 */
+	private static String error(String message) {
+		StringBuilder out = new StringBuilder("{\"error\":");
+		appendString(message == null ? "" : message, out);
+		return out.append('}').toString();
+	}
+
+	/**
+	 * Appends a string as a JSON string, escaping quotes, backslashes and
+	 * control characters.
+	 *
+	 * @param text the string
+	 * @param out  the output
+	 */
+	private static void appendString(String text, StringBuilder out) {
+		out.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.append(String.format("\\u%04x", (int) c));
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		out.append('"');
+	}
+}
@@ -0,0 +1,219 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * The Class SnippetGenerator builds short excerpts of search results with the
+ * matching words highlighted. It picks the window of words holding the most
+ * matches from the positions stored in the index, then reads only the bytes of
+ * that window from the file using the word offsets recorded when the file was
+ * added. See {@link InvertedIndex#setRecordOffsets(boolean)}. The text of the
+ * file is HTML-escaped, so only the highlight markers are markup.
+ */
+public class SnippetGenerator {
+
+	/** The default number of words in a snippet. */
+	public static final int WINDOW = 24;
+
+	/** The index. */
+	private final InvertedIndex index;
+
+	/** The number of words in a snippet. */
+	private final int window;
+
+	/** The text inserted before each match. */
+	private final String open;
+
+	/** The text inserted after each match. */
+	private final String close;
+
+	/**
+	 * Instantiates a new snippet generator highlighting matches in bold HTML.
+	 *
+	 * @param index the index
+	 */
+	public SnippetGenerator(InvertedIndex index) {
+		this(index, WINDOW, "<b>", "</b>");
+	}
+
+	/**
+	 * Instantiates a new snippet generator.
+	 *
+	 * @param index  the index
+	 * @param window the number of words in a snippet
+	 * @param open   the markup inserted before each match, which is not escaped
+	 * @param close  the markup inserted after each match, which is not escaped
+	 */
+	public SnippetGenerator(InvertedIndex index, int window, String open, String close) {
+		this.index = index;
+		this.window = Math.max(1, window);
+		this.open = open;
+		this.close = close;
+	}
+
+	/**
+	 * Builds the snippet of a location for a query.
+	 *
+	 * @param location the location of a search result
+	 * @param query    the cleaned and stemmed query words
+	 * @param exact    whether to match whole words instead of prefixes
+	 * @return the snippet, or null if no word offsets were recorded for the
+	 *         location
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public String snippet(String location, Collection<String> query, boolean exact) throws IOException {
+		WordOffsets offsets = index.getOffsets(location);
+		if (offsets == null) {
+			return null;
+		}
+		if (offsets.size() == 0) {
+			return "";
+		}
+
+		int[] matches = matchingPositions(location, query, exact);
+		int first = first(matches, offsets.size());
+		int last = Math.min(first + window - 1, offsets.size());
+
+		long start = offsets.start(first);
+		ByteBuffer buffer = ByteBuffer.allocate((int) (offsets.end(last) - start));
+		try (FileChannel channel = FileChannel.open(Paths.get(location), StandardOpenOption.READ)) {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, start + buffer.position()) < 0) {
+					break;
+				}
+			}
+		}
+		byte[] bytes = buffer.array();
+		int length = buffer.position();
+
+		StringBuilder snippet = new StringBuilder();
+		if (first > 1) {
+			snippet.append("... ");
+		}
+		int done = 0;
+		int from = Arrays.binarySearch(matches, first);
+		for (int i = from < 0 ? -from - 1 : from; i < matches.length && matches[i] <= last; i++) {
+			int matchStart = (int) (offsets.start(matches[i]) - start);
+			int matchEnd = (int) (offsets.end(matches[i]) - start);
+			if (matchEnd > length) {
+				break;
+			}
+			append(snippet, bytes, done, matchStart);
+			snippet.append(open);
+			append(snippet, bytes, matchStart, matchEnd);
+			snippet.append(close);
+			done = matchEnd;
+		}
+		append(snippet, bytes, done, length);
+		if (last < offsets.size()) {
+			snippet.append(" ...");
+		}
+		return snippet.toString();
+	}
+
+	/**
+	 * Finds the positions in a location of the words matching the query.
+	 *
+	 * @param location the location
+	 * @param query    the cleaned and stemmed query words
+	 * @param exact    whether to match whole words instead of prefixes
+	 * @return the sorted positions
+	 */
+	private int[] matchingPositions(String location, Collection<String> query, boolean exact) {
+		IndexSnapshot snapshot = index.snapshot();
+		int document = snapshot.documentId(location);
+		BitSet found = new BitSet();
+		if (document >= 0) {
+			for (int term : snapshot.matchingTerms(query, exact)) {
+				int posting = Arrays.binarySearch(snapshot.postings(term), document);
+				if (posting >= 0) {
+					for (int position : snapshot.positions(term, posting)) {
+						found.set(position);
+					}
+				}
+			}
+		}
+		return found.stream().toArray();
+	}
+
+	/**
+	 * Chooses the first position of the window holding the most matches, placing
+	 * the matches in the middle of the window when they span fewer words.
+	 *
+	 * @param matches the sorted positions of the matches
+	 * @param size    the number of words in the location
+	 * @return the first position of the window
+	 */
+	private int first(int[] matches, int size) {
+		if (matches.length == 0) {
+			return 1;
+		}
+		int best = 0;
+		int bestEnd = 1;
+		for (int i = 0, j = 0; i < matches.length; i++) {
+			while (j < matches.length && matches[j] < matches[i] + window) {
+				j++;
+			}
+			if (j - i > bestEnd - best) {
+				best = i;
+				bestEnd = j;
+			}
+		}
+		int span = matches[bestEnd - 1] - matches[best] + 1;
+		int first = matches[best] - (window - span) / 2;
+		return Math.max(1, Math.min(first, size - window + 1));
+	}
+
+	/**
+	 * Appends a range of bytes decoded as UTF-8, with whitespace collapsed into
+	 * single spaces and HTML special characters escaped.
+	 *
+	 * @param snippet the snippet
+	 * @param bytes   the bytes
+	 * @param start   the first byte
+	 * @param end     one past the last byte
+	 */
+	private static void append(StringBuilder snippet, byte[] bytes, int start, int end) {
+		if (start < end) {
+			String text = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+			escape(TextParser.SPLIT_REGEX.matcher(text).replaceAll(" "), snippet);
+		}
+	}
+
+	/**
+	 * Appends text with the characters special to HTML replaced by entities.
+	 *
+	 * @param text    the text
+	 * @param snippet the snippet
+	 */
+	private static void escape(String text, StringBuilder snippet) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				snippet.append("&amp;");
+				break;
+			case '<':
+				snippet.append("&lt;");
+				break;
+			case '>':
+				snippet.append("&gt;");
+				break;
+			case '"':
+				snippet.append("&quot;");
+				break;
+			case '\'':
+				snippet.append("&#39;");
+				break;
+			default:
+				snippet.append(c);
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+/**
+ * The Class TFIDFModel scores locations with logarithmic term frequency
+ * weighted by inverse document frequency.
+ */
+public class TFIDFModel implements ScoringModel {
+
+	@Override
+	public double weight(IndexSnapshot snapshot, int term) {
+		return Math.log((double) snapshot.documents() / snapshot.documentFrequency(term)) + 1;
+	}
+
+	@Override
+	public double score(IndexSnapshot snapshot, double weight, int frequency, int document) {
+		return weight * (1 + Math.log(frequency));
+	}
+
+	@Override
+	public String toString() {
+		return "tfidf";
+	}
+}
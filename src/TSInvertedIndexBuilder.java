@@ -85,6 +85,7 @@ public class TSInvertedIndexBuilder {
 		public void run() {
 			try {
 				InvertedIndex local = new InvertedIndex();
+				local.setRecordOffsets(index.isRecordingOffsets());
 				InvertedIndexBuilder.addFiles(path, local);
 				index.addAll(local);
 			} catch (IOException e) {
@@ -1,16 +1,21 @@
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import opennlp.tools.stemmer.Stemmer;
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
@@ -19,18 +24,39 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
  */
 public class TSSearchBuilder implements SearchBuilderInterface {
 
-	/** The results. */
-	private final TreeMap<String, List<SearchResult>> results;
+	/** The results, completed by whichever worker first searched the query. */
+	private final ConcurrentSkipListMap<String, CompletableFuture<List<SearchResult>>> results;
 
 	/** The Constant logger. */
 	private static final Logger logger = LogManager.getLogger();
 
+	/** The number of queries per thread searched ahead when streaming results. */
+	public static final int WINDOW = 4;
+
 	/** The threads. */
 	private final int threads;
 
 	/** The index. */
 	private final ThreadSafeInvertedIndex index;
 
+	/** The cache of previously searched queries. */
+	private final QueryCache cache;
+
+	/** The scoring model, or null to score by ratio of matches. */
+	private final ScoringModel model;
+
+	/** The time allowed per search in milliseconds, or 0 for no deadline. */
+	private volatile long timeout;
+
+	/** The number of postings each search may visit, or 0 for no limit. */
+	private volatile long maxPostings;
+
+	/** Whether query lines are parsed for query syntax. */
+	private volatile boolean operators;
+
+	/** The number of searches that stopped early. */
+	private final AtomicInteger truncated;
+
 	/**
 	 * Instantiates a new thread safe multithreaded search builder.
 	 *
@@ -38,9 +64,37 @@ public class TSSearchBuilder implements SearchBuilderInterface {
 	 * @param index   the index
 	 */
 	public TSSearchBuilder(ThreadSafeInvertedIndex index, int threads) {
-		results = new TreeMap<>();
+		this(index, threads, new QueryCache());
+	}
+
+	/**
+	 * Instantiates a new thread safe multithreaded search builder sharing a query
+	 * cache.
+	 *
+	 * @param index   the index
+	 * @param threads the threads
+	 * @param cache   the query cache
+	 */
+	public TSSearchBuilder(ThreadSafeInvertedIndex index, int threads, QueryCache cache) {
+		this(index, threads, cache, null);
+	}
+
+	/**
+	 * Instantiates a new thread safe multithreaded search builder ranking results
+	 * with a scoring model.
+	 *
+	 * @param index   the index
+	 * @param threads the threads
+	 * @param cache   the query cache
+	 * @param model   the scoring model, or null to score by ratio of matches
+	 */
+	public TSSearchBuilder(ThreadSafeInvertedIndex index, int threads, QueryCache cache, ScoringModel model) {
+		results = new ConcurrentSkipListMap<>();
 		this.threads = threads;
 		this.index = index;
+		this.cache = cache;
+		this.model = model;
+		this.truncated = new AtomicInteger();
 	}
 
 	/*
@@ -68,39 +122,155 @@ public class TSSearchBuilder implements SearchBuilderInterface {
 	 */
 
 	public void queryLine(String line, boolean exact) {
-		Stemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-		TreeSet<String> container = new TreeSet<>();
-		TextFileStemmer.stemLine(line, stemmer, container);
-		String joined = String.join(" ", container);
-
-		if (container.isEmpty() || results.containsKey(joined)) {
+		QueryLine parsed = QueryLine.parse(line, new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH), operators);
+		String joined = parsed.getKey();
+		if (joined.isEmpty()) {
 			return;
 		}
 
-		if (!container.isEmpty() && !results.containsKey(joined)) {
-			List<SearchResult> searchResults;
-			if (exact) {
-				searchResults = index.exactSearch(container);
-			} else {
-				searchResults = index.partialSearch(container);
+		CompletableFuture<List<SearchResult>> future = new CompletableFuture<>();
+		CompletableFuture<List<SearchResult>> existing;
+		while ((existing = results.putIfAbsent(joined, future)) != null) {
+			// another worker is already searching this query, wait for its results
+			try {
+				existing.join();
+				return;
+			} catch (CompletionException e) {
+				// that search failed and was removed, so search the query again here
 			}
-			synchronized (results) {
-				results.put(joined, searchResults);
+		}
+
+		try {
+			future.complete(search(parsed, exact));
+		} catch (RuntimeException e) {
+			results.remove(joined, future);
+			future.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Searches a parsed line, through the query cache.
+	 *
+	 * @param parsed the parsed line
+	 * @param exact  the exact boolean for searching
+	 * @return the sorted results
+	 */
+	private List<SearchResult> search(QueryLine parsed, boolean exact) {
+		return search(parsed, exact, true);
+	}
+
+	/**
+	 * Searches a parsed line, answering from the query cache when possible.
+	 *
+	 * @param parsed   the parsed line
+	 * @param exact    the exact boolean for searching
+	 * @param remember whether to add the results to the query cache
+	 * @return the sorted results
+	 */
+	private List<SearchResult> search(QueryLine parsed, boolean exact, boolean remember) {
+		SearchBudget budget = timeout > 0 || maxPostings > 0 ? new SearchBudget(timeout, maxPostings) : null;
+		TopResults top = cache.search(index, parsed, exact, model, budget, remember);
+		if (top.isPartial()) {
+			truncated.incrementAndGet();
+			logger.warn("Search for \"{}\" exceeded its budget, results are partial", parsed.getKey());
+		}
+		return top.getResults();
+	}
+
+	/**
+	 * Searches every line of a query file with the worker threads, writing the
+	 * results of each query as soon as it and every query sorting before it are
+	 * searched. Queries are handed to the workers in sorted order, at most
+	 * {@link #WINDOW} per thread ahead of the next query to write. Their results
+	 * are not added to the query cache, so besides the parsed queries only that
+	 * many result lists are held in memory at once. If a search fails, the
+	 * partially written results file is deleted.
+	 *
+	 * @param root    the query file
+	 * @param exact   the exact boolean for searching
+	 * @param output  the results file
+	 * @param compact whether to write compact output
+	 * @throws IOException if the file cannot be read or written, or a search
+	 *                     fails
+	 */
+	@Override
+	public void queryFile(Path root, boolean exact, Path output, boolean compact) throws IOException {
+		TreeMap<String, QueryLine> queries = SearchBuilderInterface.parseQueryFile(root, operators);
+		Iterator<QueryLine> next = queries.values().iterator();
+		ArrayDeque<CompletableFuture<List<SearchResult>>> pending = new ArrayDeque<>();
+		WorkQueue minions = new WorkQueue(threads);
+		boolean written = false;
+		try (BufferedWriter writer = JSONWriter.newWriter(output, compact)) {
+			JSONWriter.startQueries(writer);
+			boolean first = true;
+			for (QueryLine parsed : queries.values()) {
+				while (next.hasNext() && pending.size() < WINDOW * threads) {
+					QueryLine dispatched = next.next();
+					CompletableFuture<List<SearchResult>> future = new CompletableFuture<>();
+					pending.add(future);
+					minions.execute(() -> {
+						try {
+							future.complete(search(dispatched, exact, false));
+						} catch (RuntimeException e) {
+							future.completeExceptionally(e);
+						}
+					});
+				}
+				JSONWriter.asQueryEntry(parsed.getKey(), pending.poll().join(), writer, first);
+				first = false;
+			}
+			JSONWriter.endQueries(writer);
+			written = true;
+		} catch (CompletionException e) {
+			throw new IOException("Unable to search " + root, e.getCause());
+		} finally {
+			minions.finish();
+			minions.shutdown();
+			if (!written) {
+				// never leave a truncated results file behind
+				Files.deleteIfExists(output);
 			}
 		}
+		logger.debug("Streamed {} queries", queries.size());
+	}
+
+	@Override
+	public void setBudget(long millis, long postings) {
+		this.timeout = Math.max(0, millis);
+		this.maxPostings = Math.max(0, postings);
+	}
+
+	@Override
+	public void setOperators(boolean operators) {
+		this.operators = operators;
+	}
 
+	@Override
+	public int getTruncated() {
+		return truncated.get();
 	}
 
 	/*
 	 * 
 	 * 
-	 * @see SearchBuilderInterface#toJSON(java.nio.file.Path)
+	 * @see SearchBuilderInterface#toJSON(java.nio.file.Path, boolean)
 	 */
 
-	public void toJSON(Path output) throws IOException {
-		synchronized (results) {
-			JSONWriter.asQuery(results, output);
+	public void toJSON(Path output, boolean compact) throws IOException {
+		JSONWriter.asQuery(getResults(), output, compact);
+	}
+
+	@Override
+	public TreeMap<String, List<SearchResult>> getResults() {
+		TreeMap<String, List<SearchResult>> completed = new TreeMap<>();
+		for (String query : results.keySet()) {
+			CompletableFuture<List<SearchResult>> future = results.get(query);
+			if (future != null && !future.isCompletedExceptionally()) {
+				completed.put(query, future.join());
+			}
 		}
+		return completed;
 	}
 
 	private class SearchMinion implements Runnable {
@@ -0,0 +1,320 @@
+import java.util.ArrayDeque;
+import java.util.BitSet;
+
+/**
+ * The Class TermDictionary stores a sorted set of words compactly and resolves
+ * prefixes to ranges of word ids. The id of a word is its position in sorted
+ * order, so all the words sharing a prefix have contiguous ids.
+ *
+ * Words are front coded in blocks: the first word of every block is stored in
+ * full and every following word only stores the length of the prefix it shares
+ * with the previous word and the remaining suffix. A character trie built over
+ * the same words records the range of ids below every node, so finding the
+ * words starting with a prefix takes one step per character of the prefix.
+ */
+public class TermDictionary {
+
+	/** The number of words per front coded block. */
+	private static final int BLOCK = 16;
+
+	/** The number of words. */
+	private final int size;
+
+	/** The front coded words. */
+	private final char[] data;
+
+	/** The offset of each block in the front coded words. */
+	private final int[] blocks;
+
+	/** The character leading to each trie node. */
+	private final char[] labels;
+
+	/** The index of the first child of each trie node. */
+	private final int[] children;
+
+	/** The number of children of each trie node. */
+	private final int[] degrees;
+
+	/** The first word id below each trie node. */
+	private final int[] lows;
+
+	/** One past the last word id below each trie node. */
+	private final int[] highs;
+
+	/** The trie nodes at which a word ends. */
+	private final BitSet terminals;
+
+	/**
+	 * Builds a dictionary from words in sorted order without duplicates.
+	 *
+	 * @param words the sorted words
+	 */
+	public TermDictionary(String[] words) {
+		size = words.length;
+
+		// front code the words, counting the trie nodes on the way
+		int length = 0;
+		int nodes = 1;
+		for (int i = 0; i < size; i++) {
+			int shared = i == 0 ? 0 : shared(words[i - 1], words[i]);
+			nodes += words[i].length() - shared;
+			length += i % BLOCK == 0 ? words[i].length() + 1 : words[i].length() - shared + 2;
+		}
+		data = new char[length];
+		blocks = new int[(size + BLOCK - 1) / BLOCK];
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			if (i % BLOCK == 0) {
+				blocks[i / BLOCK] = offset;
+				data[offset++] = (char) words[i].length();
+				words[i].getChars(0, words[i].length(), data, offset);
+				offset += words[i].length();
+			} else {
+				int shared = shared(words[i - 1], words[i]);
+				data[offset++] = (char) shared;
+				data[offset++] = (char) (words[i].length() - shared);
+				words[i].getChars(shared, words[i].length(), data, offset);
+				offset += words[i].length() - shared;
+			}
+		}
+
+		labels = new char[nodes];
+		children = new int[nodes];
+		degrees = new int[nodes];
+		lows = new int[nodes];
+		highs = new int[nodes];
+		terminals = new BitSet(nodes);
+		build(words);
+	}
+
+	/**
+	 * Builds the trie breadth first, so the children of every node are stored
+	 * next to each other in label order.
+	 *
+	 * @param words the sorted words
+	 */
+	private void build(String[] words) {
+		int count = 1;
+		lows[0] = 0;
+		highs[0] = size;
+
+		ArrayDeque<int[]> queue = new ArrayDeque<>();
+		queue.add(new int[] { 0, 0 });
+		while (!queue.isEmpty()) {
+			int[] next = queue.poll();
+			int node = next[0];
+			int depth = next[1];
+			int low = lows[node];
+			int high = highs[node];
+
+			if (low < high && words[low].length() == depth) {
+				terminals.set(node);
+				low++;
+			}
+
+			children[node] = count;
+			int start = low;
+			while (start < high) {
+				char label = words[start].charAt(depth);
+				int end = start + 1;
+				while (end < high && words[end].charAt(depth) == label) {
+					end++;
+				}
+				labels[count] = label;
+				lows[count] = start;
+				highs[count] = end;
+				queue.add(new int[] { count, depth + 1 });
+				count++;
+				start = end;
+			}
+			degrees[node] = count - children[node];
+		}
+	}
+
+	/**
+	 * Returns the length of the prefix shared by two words.
+	 *
+	 * @param first  the first word
+	 * @param second the second word
+	 * @return the shared prefix length
+	 */
+	private static int shared(String first, String second) {
+		int limit = Math.min(first.length(), second.length());
+		int i = 0;
+		while (i < limit && first.charAt(i) == second.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the number of words.
+	 *
+	 * @return the number of words
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the trie node reached by following the characters of the prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return the node, or -1 if no word starts with the prefix
+	 */
+	int find(CharSequence prefix) {
+		int node = 0;
+		for (int i = 0; i < prefix.length() && node >= 0; i++) {
+			node = child(node, prefix.charAt(i));
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the child of a trie node with the given label.
+	 *
+	 * @param node  the node
+	 * @param label the label
+	 * @return the child, or -1 if there is none
+	 */
+	int child(int node, char label) {
+		int low = children[node];
+		int high = low + degrees[node] - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (labels[middle] < label) {
+				low = middle + 1;
+			} else if (labels[middle] > label) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the id of a word.
+	 *
+	 * @param word the word
+	 * @return the word id, or -1 if the word is not in the dictionary
+	 */
+	public int id(String word) {
+		int node = find(word);
+		return node >= 0 && terminals.get(node) ? lows[node] : -1;
+	}
+
+	/**
+	 * Returns the range of ids of the words starting with the prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return the first id and one past the last id, which are equal if no word
+	 *         starts with the prefix
+	 */
+	public int[] range(String prefix) {
+		int node = find(prefix);
+		return node < 0 ? new int[] { 0, 0 } : new int[] { lows[node], highs[node] };
+	}
+
+	/**
+	 * Returns the word with the given id by decoding its front coded block.
+	 *
+	 * @param id the word id
+	 * @return the word
+	 */
+	public String term(int id) {
+		int offset = blocks[id / BLOCK];
+		int length = data[offset++];
+		StringBuilder word = new StringBuilder(length + 8);
+		word.append(data, offset, length);
+		offset += length;
+		for (int i = id - id % BLOCK + 1; i <= id; i++) {
+			int shared = data[offset++];
+			int suffix = data[offset++];
+			word.setLength(shared);
+			word.append(data, offset, suffix);
+			offset += suffix;
+		}
+		return word.toString();
+	}
+
+	/**
+	 * Returns the number of trie nodes. Every node comes after its parent.
+	 *
+	 * @return the number of nodes
+	 */
+	int nodes() {
+		return labels.length;
+	}
+
+	/**
+	 * Returns the root of the trie.
+	 *
+	 * @return the root node
+	 */
+	int root() {
+		return 0;
+	}
+
+	/**
+	 * Returns the index of the first child of a trie node. The children of a node
+	 * are stored next to each other in label order.
+	 *
+	 * @param node the node
+	 * @return the first child
+	 */
+	int firstChild(int node) {
+		return children[node];
+	}
+
+	/**
+	 * Returns the number of children of a trie node.
+	 *
+	 * @param node the node
+	 * @return the number of children
+	 */
+	int degree(int node) {
+		return degrees[node];
+	}
+
+	/**
+	 * Returns the character leading to a trie node.
+	 *
+	 * @param node the node
+	 * @return the label
+	 */
+	char label(int node) {
+		return labels[node];
+	}
+
+	/**
+	 * Returns the first word id below a trie node, which is the id of the word
+	 * ending at the node if there is one.
+	 *
+	 * @param node the node
+	 * @return the first word id
+	 */
+	int low(int node) {
+		return lows[node];
+	}
+
+	/**
+	 * Returns one past the last word id below a trie node.
+	 *
+	 * @param node the node
+	 * @return one past the last word id
+	 */
+	int high(int node) {
+		return highs[node];
+	}
+
+	/**
+	 * Tests whether a word ends at a trie node.
+	 *
+	 * @param node the node
+	 * @return true if a word ends at the node
+	 */
+	boolean isTerminal(int node) {
+		return terminals.get(node);
+	}
+}
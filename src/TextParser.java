@@ -9,6 +9,7 @@ public class TextParser {
 	public static final Pattern SPLIT_REGEX = Pattern.compile("(?U)\\p{Space}+");
 	public static final Pattern CLEAN_REGEX = Pattern.compile("(?U)[^\\p{Alpha}\\p{Space}]+");
 	public static final String SPLITREGEX = "(?U)\\p{Space}+";
+	public static final Pattern TOKEN_REGEX = Pattern.compile("(?U)[^\\p{Space}]+");
 
 	/**
 	 * Cleans the text by removing any non-alphabetic characters (e.g. non-letters
@@ -2,6 +2,7 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 
 import org.apache.logging.log4j.LogManager;
@@ -18,6 +19,50 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		lock = new ReadWriteLock();
 	}
 
+	@Override
+	public long getGeneration() {
+		lock.lockReadOnly();
+		try {
+			return super.getGeneration();
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	@Override
+	public IndexSnapshot snapshot() {
+		lock.lockReadOnly();
+		try {
+			synchronized (this) {
+				return super.snapshot();
+			}
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	@Override
+	public IndexSnapshot currentSnapshot() {
+		lock.lockReadOnly();
+		try {
+			synchronized (this) {
+				return super.currentSnapshot();
+			}
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	@Override
+	public void setPrefixAccelerator(long budget, Map<String, Integer> queryLog) {
+		lock.lockReadWrite();
+		try {
+			super.setPrefixAccelerator(budget, queryLog);
+		} finally {
+			lock.unlockReadWrite();
+		}
+	}
+
 	@Override
 	public int count(String word) {
 		lock.lockReadOnly();
@@ -89,6 +134,26 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public void addOffsets(String location, WordOffsets words) {
+		lock.lockReadWrite();
+		try {
+			super.addOffsets(location, words);
+		} finally {
+			lock.unlockReadWrite();
+		}
+	}
+
+	@Override
+	public WordOffsets getOffsets(String location) {
+		lock.lockReadOnly();
+		try {
+			return super.getOffsets(location);
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
 	@Override
 	public List<SearchResult> exactSearch(TreeSet<String> query) {
 		lock.lockReadOnly();
@@ -110,20 +175,79 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	}
 
 	@Override
-	public void toJSON(Path path) throws IOException {
+	public TopResults exactSearch(TreeSet<String> query, int k) {
+		lock.lockReadOnly();
+		try {
+			return super.exactSearch(query, k);
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	@Override
+	public TopResults partialSearch(TreeSet<String> query, int k) {
+		lock.lockReadOnly();
+		try {
+			return super.partialSearch(query, k);
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	@Override
+	public TopResults exactSearch(TreeSet<String> query, int k, SearchBudget budget) {
 		lock.lockReadOnly();
 		try {
-			super.toJSON(path);
+			return super.exactSearch(query, k, budget);
 		} finally {
 			lock.unlockReadOnly();
 		}
 	}
 
 	@Override
-	public void locJSON(Path path) throws IOException {
+	public TopResults partialSearch(TreeSet<String> query, int k, SearchBudget budget) {
+		lock.lockReadOnly();
+		try {
+			return super.partialSearch(query, k, budget);
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	/**
+	 * Writes the index from the current snapshot if one is up to date, so writers
+	 * are not blocked during the export. Otherwise the index is written directly
+	 * while holding the read lock, rather than copying it into a new snapshot.
+	 */
+	@Override
+	public void toJSON(Path path, boolean compact) throws IOException {
+		IndexSnapshot current = currentSnapshot();
+		if (current != null) {
+			JSONWriter.asInvertedIndex(current, path, 1, compact);
+			return;
+		}
+		lock.lockReadOnly();
+		try {
+			super.toJSON(path, compact);
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	@Override
+	public void toJSON(Path path, int threads, boolean compact) throws IOException {
+		if (threads > 1) {
+			super.toJSON(path, threads, compact);
+		} else {
+			toJSON(path, compact);
+		}
+	}
+
+	@Override
+	public void locJSON(Path path, boolean compact) throws IOException {
 		lock.lockReadOnly();
 		try {
-			super.locJSON(path);
+			super.locJSON(path, compact);
 		} finally {
 			lock.unlockReadOnly();
 		}
@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The Class TopKCollector keeps only the best k search results offered to it in
+ * a bounded heap, using the natural ordering of {@link SearchResult}, while
+ * counting every result it was offered.
+ */
+public class TopKCollector {
+
+	/** The best results so far, with the worst of them at the head. */
+	private final PriorityQueue<SearchResult> heap;
+
+	/** The number of results to keep. */
+	private final int k;
+
+	/** The result that kept results must sort after, or null. */
+	private final SearchResult after;
+
+	/** The number of results offered. */
+	private int totalHits;
+
+	/**
+	 * Instantiates a new collector.
+	 *
+	 * @param k the number of results to keep, or a non-positive number to keep
+	 *          every result
+	 */
+	public TopKCollector(int k) {
+		this(k, null);
+	}
+
+	/**
+	 * Instantiates a new collector keeping only results that sort strictly after
+	 * a given result, such as the last result of a previous page. Every result
+	 * offered still counts towards the total hits.
+	 *
+	 * @param k     the number of results to keep, or a non-positive number to keep
+	 *              every result
+	 * @param after the result to keep results after, or null to keep any result
+	 */
+	public TopKCollector(int k, SearchResult after) {
+		this.after = after;
+		this.k = k > 0 ? k : Integer.MAX_VALUE;
+		this.heap = new PriorityQueue<>(Math.min(this.k, 1024), Collections.reverseOrder());
+		this.totalHits = 0;
+	}
+
+	/**
+	 * Offers a result to the collector. The result must not be updated afterwards.
+	 *
+	 * @param result the result
+	 * @return true if the result is currently among the best k
+	 */
+	public boolean offer(SearchResult result) {
+		totalHits++;
+		if (after != null && result.compareTo(after) <= 0) {
+			return false;
+		}
+		if (heap.size() < k) {
+			heap.add(result);
+			return true;
+		}
+		if (result.compareTo(heap.peek()) < 0) {
+			heap.poll();
+			heap.add(result);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Offers a result given by its fields, creating the {@link SearchResult} only
+	 * if it is among the best k so far.
+	 *
+	 * @param location the location
+	 * @param count    the number of matches
+	 * @param total    the total number of words at the location
+	 * @param score    the score
+	 * @return true if the result is currently among the best k
+	 */
+	public boolean offer(String location, int count, int total, double score) {
+		SearchResult worst = threshold();
+		if ((worst != null && compare(score, count, location, worst) >= 0)
+				|| (after != null && compare(score, count, location, after) <= 0)) {
+			totalHits++;
+			return false;
+		}
+		return offer(new SearchResult(location, count, total, score));
+	}
+
+	/**
+	 * Offers a result scored by its ratio of matches to total words, creating the
+	 * {@link SearchResult} only if it is among the best k so far.
+	 *
+	 * @param location the location
+	 * @param count    the number of matches
+	 * @param total    the total number of words at the location
+	 * @return true if the result is currently among the best k
+	 */
+	public boolean offer(String location, int count, int total) {
+		double score = (double) count / total;
+		SearchResult worst = threshold();
+		if ((worst != null && compare(score, count, location, worst) >= 0)
+				|| (after != null && compare(score, count, location, after) <= 0)) {
+			totalHits++;
+			return false;
+		}
+		return offer(new SearchResult(location, count, total));
+	}
+
+	/**
+	 * Compares a result given by its fields with another result, in the same order
+	 * as {@link SearchResult#compareTo(SearchResult)}.
+	 *
+	 * @param score    the score
+	 * @param count    the number of matches
+	 * @param location the location
+	 * @param other    the other result
+	 * @return a negative number if the result sorts first, zero if the results
+	 *         sort together, or a positive number if the other result sorts first
+	 */
+	private static int compare(double score, int count, String location, SearchResult other) {
+		if (score != other.getScore()) {
+			return Double.compare(other.getScore(), score);
+		}
+		if (count != other.getCount()) {
+			return Integer.compare(other.getCount(), count);
+		}
+		// break ties between locations differing only in case, so cursors skip none
+		int compare = location.compareToIgnoreCase(other.getLocations());
+		return compare != 0 ? compare : location.compareTo(other.getLocations());
+	}
+
+	/**
+	 * Returns the worst result currently kept once the collector is full, which
+	 * any new result has to beat, or null if the collector is not full yet.
+	 *
+	 * @return the threshold result or null
+	 */
+	public SearchResult threshold() {
+		return heap.size() < k ? null : heap.peek();
+	}
+
+	/**
+	 * Gets the number of results offered to the collector.
+	 *
+	 * @return the total hits
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * Returns the kept results from best to worst.
+	 *
+	 * @return the sorted results
+	 */
+	public List<SearchResult> getResults() {
+		List<SearchResult> results = new ArrayList<>(heap);
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * Returns the kept results from best to worst along with the total hits.
+	 *
+	 * @return the top results
+	 */
+	public TopResults toTopResults() {
+		return new TopResults(getResults(), totalHits);
+	}
+}
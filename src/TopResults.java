@@ -0,0 +1,95 @@
+import java.util.List;
+
+/**
+ * The Class TopResults stores the best results of a search along with the
+ * total number of locations that matched the search.
+ */
+public class TopResults {
+
+	/** The best results, sorted. */
+	private final List<SearchResult> results;
+
+	/** The number of matching locations. */
+	private final int totalHits;
+
+	/** Whether the search stopped early, before visiting every match. */
+	private final boolean partial;
+
+	/** Whether some matching locations were skipped without being counted. */
+	private final boolean lowerBound;
+
+	/**
+	 * Instantiates new top results.
+	 *
+	 * @param results   the sorted results
+	 * @param totalHits the total number of matching locations
+	 */
+	public TopResults(List<SearchResult> results, int totalHits) {
+		this(results, totalHits, false);
+	}
+
+	/**
+	 * Instantiates new top results, possibly from a search that stopped early.
+	 *
+	 * @param results   the sorted results
+	 * @param totalHits the number of matching locations found
+	 * @param partial   whether the search stopped early
+	 */
+	public TopResults(List<SearchResult> results, int totalHits, boolean partial) {
+		this(results, totalHits, partial, partial);
+	}
+
+	/**
+	 * Instantiates new top results, possibly from a search that skipped some
+	 * matching locations without counting them.
+	 *
+	 * @param results    the sorted results
+	 * @param totalHits  the number of matching locations counted
+	 * @param partial    whether the search stopped early
+	 * @param lowerBound whether matching locations may have gone uncounted
+	 */
+	public TopResults(List<SearchResult> results, int totalHits, boolean partial, boolean lowerBound) {
+		this.results = results;
+		this.totalHits = totalHits;
+		this.partial = partial;
+		this.lowerBound = partial || lowerBound;
+	}
+
+	/**
+	 * Gets the best results, sorted.
+	 *
+	 * @return the results
+	 */
+	public List<SearchResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * Gets the total number of matching locations.
+	 *
+	 * @return the total hits
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * Checks whether the total hits are only a lower bound, because the search
+	 * skipped or never reached some matching locations.
+	 *
+	 * @return true if the total hits may be less than the number of matches
+	 */
+	public boolean isTotalHitsLowerBound() {
+		return lowerBound;
+	}
+
+	/**
+	 * Checks whether the search stopped early because its budget was exceeded, in
+	 * which case the results are the best of the matches found before stopping.
+	 *
+	 * @return true if the results are partial
+	 */
+	public boolean isPartial() {
+		return partial;
+	}
+}
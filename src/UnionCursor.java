@@ -0,0 +1,102 @@
+import java.util.List;
+
+/**
+ * The Class UnionCursor iterates over the locations containing any of several
+ * words, such as all the words starting with a prefix, as if they were the
+ * postings of a single word.
+ */
+public class UnionCursor implements PostingIterator {
+
+	/** The cursors of each word. */
+	private final PostingIterator[] cursors;
+
+	/** The current location id. */
+	private int doc;
+
+	/**
+	 * Instantiates a new union cursor positioned on the first location.
+	 *
+	 * @param cursors the cursors of each word
+	 */
+	public UnionCursor(List<? extends PostingIterator> cursors) {
+		this.cursors = cursors.toArray(new PostingIterator[0]);
+		this.doc = minimum();
+	}
+
+	/**
+	 * Returns the smallest current location id of any word.
+	 *
+	 * @return the location id
+	 */
+	private int minimum() {
+		int min = NO_MORE;
+		for (PostingIterator cursor : cursors) {
+			min = Math.min(min, cursor.doc());
+		}
+		return min;
+	}
+
+	@Override
+	public int doc() {
+		return doc;
+	}
+
+	@Override
+	public int frequency() {
+		int frequency = 0;
+		for (PostingIterator cursor : cursors) {
+			if (cursor.doc() == doc) {
+				frequency += cursor.frequency();
+			}
+		}
+		return frequency;
+	}
+
+	@Override
+	public double score(ScoringModel model) {
+		double score = 0;
+		for (PostingIterator cursor : cursors) {
+			if (cursor.doc() == doc) {
+				score += cursor.score(model);
+			}
+		}
+		return score;
+	}
+
+	@Override
+	public int next() {
+		if (doc == NO_MORE) {
+			return doc;
+		}
+		for (PostingIterator cursor : cursors) {
+			if (cursor.doc() == doc) {
+				cursor.next();
+			}
+		}
+		doc = minimum();
+		return doc;
+	}
+
+	@Override
+	public int advance(int target) {
+		if (target <= doc) {
+			return doc;
+		}
+		for (PostingIterator cursor : cursors) {
+			if (cursor.doc() < target) {
+				cursor.advance(target);
+			}
+		}
+		doc = minimum();
+		return doc;
+	}
+
+	@Override
+	public long visited() {
+		long visited = 0;
+		for (PostingIterator cursor : cursors) {
+			visited += cursor.visited();
+		}
+		return visited;
+	}
+}
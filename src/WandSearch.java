@@ -0,0 +1,164 @@
+import java.util.Collection;
+
+/**
+ * The Class WandSearch ranks locations with the weak-AND (WAND) algorithm,
+ * keeping only the best k results. Every query word has an upper bound on the
+ * score it can add to a location, so once k results are known, locations whose
+ * words cannot add up to beat the worst of them are skipped over without being
+ * scored. The results are the same as scoring every location, but the total
+ * hits only count the locations that were scored, and are marked as a lower
+ * bound whenever a matching location was skipped.
+ */
+public class WandSearch {
+
+	/** The index snapshot. */
+	private final IndexSnapshot snapshot;
+
+	/** The scoring model. */
+	private final ScoringModel model;
+
+	/** The number of postings scored by the last search. */
+	private long scored;
+
+	/** The number of postings visited by the last search. */
+	private long visited;
+
+	/**
+	 * Instantiates a new WAND search.
+	 *
+	 * @param snapshot the index snapshot
+	 * @param model    the scoring model
+	 */
+	public WandSearch(IndexSnapshot snapshot, ScoringModel model) {
+		this.snapshot = snapshot;
+		this.model = model;
+	}
+
+	/**
+	 * Ranks the locations matching the query, keeping only the best k results.
+	 * Because skipped locations are never scored, the total hits only count the
+	 * locations that were fully scored, see
+	 * {@link TopResults#isTotalHitsLowerBound()}.
+	 *
+	 * @param query the cleaned and stemmed query words
+	 * @param exact whether to match whole words instead of prefixes
+	 * @param k     the number of results to keep
+	 * @return the best results
+	 */
+	public TopResults search(Collection<String> query, boolean exact, int k) {
+		return search(snapshot.matchingTerms(query, exact), k, null);
+	}
+
+	/**
+	 * Ranks the locations containing any of the words, keeping only the best k
+	 * results that sort after a given result. The scores of a location add up in
+	 * the order the words are listed, as when every location is scored, so both
+	 * searches rank locations the same way.
+	 *
+	 * @param terms the word ids
+	 * @param k     the number of results to keep
+	 * @param after the result to keep results after, or null
+	 * @return the best results
+	 */
+	public TopResults search(int[] terms, int k, SearchResult after) {
+		double[] bounds = snapshot.maxScores(model);
+		PostingCursor[] cursors = new PostingCursor[terms.length];
+		int[] order = new int[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			cursors[i] = new PostingCursor(snapshot, terms[i], model);
+			order[i] = i;
+		}
+
+		TopKCollector collector = new TopKCollector(k, after);
+		scored = 0;
+		boolean skipped = false;
+
+		while (true) {
+			sort(cursors, order);
+
+			// find the first cursor at which the upper bounds could beat the threshold
+			SearchResult threshold = collector.threshold();
+			double bound = 0;
+			int pivot = -1;
+			for (int i = 0; i < cursors.length && cursors[i].doc() != PostingIterator.NO_MORE; i++) {
+				bound += bounds[cursors[i].getTerm()];
+				if (threshold == null || bound >= threshold.getScore()) {
+					pivot = i;
+					break;
+				}
+			}
+			if (pivot < 0) {
+				// the locations left in any cursor are never counted
+				skipped |= cursors.length > 0 && cursors[0].doc() != PostingIterator.NO_MORE;
+				break;
+			}
+
+			int doc = cursors[pivot].doc();
+			if (cursors[0].doc() == doc) {
+				int count = 0;
+				double score = 0;
+				for (int i = 0; i < cursors.length && cursors[i].doc() == doc; i++) {
+					count += cursors[i].frequency();
+					score += cursors[i].score(model);
+					scored++;
+					cursors[i].next();
+				}
+				collector.offer(snapshot.location(doc), count, snapshot.length(doc), score);
+			} else {
+				for (int i = 0; i < pivot; i++) {
+					cursors[i].advance(doc);
+				}
+				skipped = true;
+			}
+		}
+
+		visited = 0;
+		for (PostingCursor cursor : cursors) {
+			visited += cursor.visited();
+		}
+		return new TopResults(collector.getResults(), collector.getTotalHits(), false, skipped);
+	}
+
+	/**
+	 * Sorts the cursors by current location, then by the order of their words,
+	 * with an insertion sort, which is fast because only the cursors that moved
+	 * are out of order.
+	 *
+	 * @param cursors the cursors
+	 * @param order   the index of the word of each cursor, moved along with it
+	 */
+	private static void sort(PostingCursor[] cursors, int[] order) {
+		for (int i = 1; i < cursors.length; i++) {
+			PostingCursor cursor = cursors[i];
+			int index = order[i];
+			int j = i - 1;
+			while (j >= 0 && (cursors[j].doc() > cursor.doc()
+					|| (cursors[j].doc() == cursor.doc() && order[j] > index))) {
+				cursors[j + 1] = cursors[j];
+				order[j + 1] = order[j];
+				j--;
+			}
+			cursors[j + 1] = cursor;
+			order[j + 1] = index;
+		}
+	}
+
+	/**
+	 * Gets the number of postings scored by the last search.
+	 *
+	 * @return the postings scored
+	 */
+	public long getScored() {
+		return scored;
+	}
+
+	/**
+	 * Gets the number of postings visited by the last search, including those
+	 * stepped over by skip pointers.
+	 *
+	 * @return the postings visited
+	 */
+	public long getVisited() {
+		return visited;
+	}
+}
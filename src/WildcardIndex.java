@@ -0,0 +1,160 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The Class WildcardIndex finds the words of a snapshot matching a wildcard
+ * pattern such as <code>*ation</code>, <code>*stem*</code> or
+ * <code>co*ing</code>, where <code>*</code> matches any number of characters.
+ * The k-grams of the pattern are looked up to narrow the candidates to the
+ * words containing all of them, and only those candidates are checked against
+ * the pattern.
+ */
+public class WildcardIndex {
+
+	/** The wildcard character. */
+	public static final char WILDCARD = '*';
+
+	/** The number of characters per gram. */
+	private final int k;
+
+	/** The sorted ids of the words containing each gram. */
+	private final HashMap<String, int[]> grams;
+
+	/** The dictionary of words. */
+	private final TermDictionary dictionary;
+
+	/**
+	 * Instantiates a new wildcard index.
+	 *
+	 * @param k          the number of characters per gram
+	 * @param grams      the sorted word ids of each gram
+	 * @param dictionary the dictionary of words
+	 */
+	WildcardIndex(int k, HashMap<String, int[]> grams, TermDictionary dictionary) {
+		this.k = k;
+		this.grams = grams;
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * Returns the sorted ids of the words matching the pattern.
+	 *
+	 * @param pattern the wildcard pattern
+	 * @return the word ids
+	 */
+	public int[] expand(String pattern) {
+		List<String> required = new ArrayList<>();
+		String padded = KGramIndex.BOUNDARY + pattern + KGramIndex.BOUNDARY;
+		for (String fragment : padded.split("\\*")) {
+			for (int i = 0; i + k <= fragment.length(); i++) {
+				required.add(fragment.substring(i, i + k));
+			}
+		}
+
+		int[] candidates = null;
+		for (String gram : required) {
+			int[] terms = grams.get(gram);
+			if (terms == null) {
+				return new int[0];
+			}
+			candidates = candidates == null ? terms : intersect(candidates, terms);
+		}
+
+		if (candidates == null) {
+			// the pattern has no complete gram, so every word is a candidate
+			return scan(dictionary, pattern);
+		}
+
+		int[] matches = new int[candidates.length];
+		int size = 0;
+		for (int term : candidates) {
+			if (matches(pattern, dictionary.term(term))) {
+				matches[size++] = term;
+			}
+		}
+		return Arrays.copyOf(matches, size);
+	}
+
+	/**
+	 * Returns the sorted ids of the words matching the pattern by checking every
+	 * word of the dictionary.
+	 *
+	 * @param dictionary the dictionary
+	 * @param pattern    the wildcard pattern
+	 * @return the word ids
+	 */
+	public static int[] scan(TermDictionary dictionary, String pattern) {
+		int[] matches = new int[16];
+		int size = 0;
+		for (int term = 0; term < dictionary.size(); term++) {
+			if (matches(pattern, dictionary.term(term))) {
+				if (size == matches.length) {
+					matches = Arrays.copyOf(matches, size * 2);
+				}
+				matches[size++] = term;
+			}
+		}
+		return Arrays.copyOf(matches, size);
+	}
+
+	/**
+	 * Intersects two sorted arrays of word ids.
+	 *
+	 * @param first  the first sorted ids
+	 * @param second the second sorted ids
+	 * @return the sorted ids in both
+	 */
+	private static int[] intersect(int[] first, int[] second) {
+		int[] shared = new int[Math.min(first.length, second.length)];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < first.length && j < second.length) {
+			if (first[i] < second[j]) {
+				i++;
+			} else if (first[i] > second[j]) {
+				j++;
+			} else {
+				shared[size++] = first[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(shared, size);
+	}
+
+	/**
+	 * Tests whether a word matches a wildcard pattern, backtracking to the most
+	 * recent wildcard on a mismatch.
+	 *
+	 * @param pattern the wildcard pattern
+	 * @param word    the word
+	 * @return true if the whole word matches the pattern
+	 */
+	public static boolean matches(String pattern, String word) {
+		int p = 0;
+		int w = 0;
+		int star = -1;
+		int resume = 0;
+		while (w < word.length()) {
+			if (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+				star = p++;
+				resume = w;
+			} else if (p < pattern.length() && pattern.charAt(p) == word.charAt(w)) {
+				p++;
+				w++;
+			} else if (star >= 0) {
+				p = star + 1;
+				w = ++resume;
+			} else {
+				return false;
+			}
+		}
+		while (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+			p++;
+		}
+		return p == pattern.length();
+	}
+}
@@ -0,0 +1,89 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * The Class WildcardQuery matches locations containing words that match
+ * wildcard patterns like <code>*ation</code> or <code>*stem*</code>, along with
+ * any plain words on the same line. Patterns are matched against the stemmed
+ * words of the index as written, without stemming the pattern.
+ */
+public class WildcardQuery implements Query {
+
+	/** The cleaned wildcard patterns. */
+	private final TreeSet<String> patterns;
+
+	/** The stemmed plain words. */
+	private final TreeSet<String> words;
+
+	/**
+	 * Instantiates a new wildcard query.
+	 *
+	 * @param patterns the cleaned wildcard patterns
+	 * @param words    the stemmed plain words
+	 */
+	public WildcardQuery(TreeSet<String> patterns, TreeSet<String> words) {
+		this.patterns = patterns;
+		this.words = words;
+	}
+
+	/**
+	 * Parses a query line as a wildcard query if any word contains a wildcard.
+	 *
+	 * @param line    the query line
+	 * @param stemmer the stemmer to use
+	 * @return the wildcard query, or null if the line has no wildcards
+	 */
+	public static WildcardQuery parse(String line, Stemmer stemmer) {
+		if (line.indexOf(WildcardIndex.WILDCARD) < 0) {
+			return null;
+		}
+
+		TreeSet<String> patterns = new TreeSet<>();
+		TreeSet<String> words = new TreeSet<>();
+		for (String token : TextParser.split(line)) {
+			if (token.indexOf(WildcardIndex.WILDCARD) < 0) {
+				TextFileStemmer.stemLine(token, stemmer, words);
+				continue;
+			}
+
+			// clean the text between wildcards, collapsing repeated wildcards
+			StringBuilder pattern = new StringBuilder();
+			boolean letters = false;
+			for (String piece : token.split("\\*", -1)) {
+				String cleaned = TextParser.clean(piece);
+				letters |= !cleaned.isEmpty();
+				pattern.append(cleaned);
+				pattern.append(WildcardIndex.WILDCARD);
+			}
+			pattern.setLength(pattern.length() - 1);
+			if (letters) {
+				patterns.add(pattern.toString().replaceAll("\\*+", "*"));
+			}
+		}
+
+		return patterns.isEmpty() ? null : new WildcardQuery(patterns, words);
+	}
+
+	@Override
+	public TopResults search(IndexSnapshot snapshot, boolean exact, ScoringModel model, int k, SearchBudget budget) {
+		int[] terms = snapshot.matchingTerms(words, exact);
+		for (String pattern : patterns) {
+			int[] matched = snapshot.getWildcardIndex().expand(pattern);
+			int size = terms.length;
+			terms = Arrays.copyOf(terms, size + matched.length);
+			System.arraycopy(matched, 0, terms, size, matched.length);
+		}
+		return snapshot.searchTerms(terms, model, k, budget);
+	}
+
+	@Override
+	public String toString() {
+		List<String> all = new ArrayList<>(patterns);
+		all.addAll(words);
+		return String.join(" ", all);
+	}
+}
@@ -0,0 +1,72 @@
+import java.util.Arrays;
+
+/**
+ * The Class WordOffsets stores where each word of a file starts and how many
+ * bytes it spans in the file, by position. Positions start at 1, like the
+ * positions stored in the {@link InvertedIndex}.
+ */
+public class WordOffsets {
+
+	/** The byte offset of each word. */
+	private long[] starts;
+
+	/** The number of bytes of each word. */
+	private int[] lengths;
+
+	/** The number of words. */
+	private int size;
+
+	/**
+	 * Instantiates new, empty word offsets.
+	 */
+	public WordOffsets() {
+		this.starts = new long[64];
+		this.lengths = new int[64];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds the offsets of the next word.
+	 *
+	 * @param start  the byte offset of the word in the file
+	 * @param length the number of bytes of the word in the file
+	 */
+	public void add(long start, int length) {
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+		}
+		starts[size] = start;
+		lengths[size] = length;
+		size++;
+	}
+
+	/**
+	 * Gets the number of words.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the byte offset where the word at a position starts.
+	 *
+	 * @param position the position, starting at 1
+	 * @return the byte offset
+	 */
+	public long start(int position) {
+		return starts[position - 1];
+	}
+
+	/**
+	 * Gets the byte offset just past the end of the word at a position.
+	 *
+	 * @param position the position, starting at 1
+	 * @return the byte offset
+	 */
+	public long end(int position) {
+		return starts[position - 1] + lengths[position - 1];
+	}
+}